@@ -24,6 +24,8 @@ import android.content.Intent;
 import android.util.Log;
 
 import co.aospa.glyph.Constants.Constants;
+import co.aospa.glyph.Manager.RenderThread;
+import co.aospa.glyph.Utils.AnimationIndex;
 import co.aospa.glyph.Utils.ServiceUtils;
 
 public class BootCompletedReceiver extends BroadcastReceiver {
@@ -36,5 +38,7 @@ public class BootCompletedReceiver extends BroadcastReceiver {
         if (DEBUG) Log.d(TAG, "Received boot completed intent");
         Constants.CONTEXT = context.getApplicationContext();
         ServiceUtils.checkGlyphService();
+        // Validate the assets before anything gets to play them
+        RenderThread.post(AnimationIndex::build);
     }
 }
@@ -18,6 +18,7 @@ package co.aospa.glyph.Constants;
 
 import android.content.Context;
 
+import co.aospa.glyph.Utils.BrightnessTable;
 import co.aospa.glyph.Utils.ResourceUtils;
 
 public final class Constants {
@@ -27,12 +28,10 @@ public final class Constants {
 
     public static Context CONTEXT;
 
-    private static String device = null;
-
     private static int brightness = -1;
     private static int brightnessMax = -1;
     private static int[] brightnessLevels = null;
-    private static int[] supportedAnimationPatternLengths = null;
+    private static volatile BrightnessTable brightnessTable = null;
 
     public static final String GLYPH_ENABLE = "glyph_enable";
     public static final String GLYPH_FLIP_ENABLE = "glyph_settings_flip_toggle";
@@ -50,6 +49,8 @@ public final class Constants {
     public static final String GLYPH_NOTIFS_SUB_PREVIEW = "glyph_settings_notifs_sub_preview";
     public static final String GLYPH_NOTIFS_SUB_ANIMATIONS = "glyph_settings_notifs_sub_animations";
     public static final String GLYPH_NOTIFS_SUB_ESSENTIAL = "glyph_settings_notifs_sub_essential";
+    // Prefix of the per app animation preferences, followed by the package name
+    public static final String GLYPH_NOTIFS_SUB_APP_ANIMATION = "glyph_settings_notifs_sub_animation_";
     public static final String GLYPH_NOTIFS_SUB_CATEGORY = "glyph_settings_notifs_sub";
     public static final String GLYPH_NOTIFS_SUB_ENABLE = "glyph_settings_notifs_sub_toggle";
     public static final String GLYPH_VOLUME_LEVEL_ENABLE = "glyph_settings_volume_level_toggle";
@@ -68,16 +69,16 @@ public final class Constants {
     };
 
     public static String getDevice() {
-        if (device == null)
-            device = ResourceUtils.getString("glyph_settings_device");
-
-        return device;
+        return DeviceProfile.get().getDevice();
     }
 
     public static boolean setBrightness(int b) {
-        if (b > ResourceUtils.getInteger("glyph_settings_brightness_max"))
+        if (b > getMaxBrightness())
             return false;
 
+        if (b != brightness || brightnessTable == null)
+            brightnessTable = createBrightnessTable(b);
+
         brightness = b;
         return true;
     }
@@ -96,6 +97,18 @@ public final class Constants {
         return brightnessMax;
     }
 
+    public static BrightnessTable getBrightnessTable() {
+        if (brightnessTable == null)
+            brightnessTable = createBrightnessTable(getBrightness());
+
+        return brightnessTable;
+    }
+
+    private static BrightnessTable createBrightnessTable(int b) {
+        float gamma = Float.parseFloat(ResourceUtils.getString("glyph_settings_brightness_gamma"));
+        return new BrightnessTable(getMaxBrightness(), b, gamma);
+    }
+
     public static int[] getBrightnessLevels() {
         if (brightnessLevels == null)
             brightnessLevels = ResourceUtils.getIntArray("glyph_settings_brightness_levels");
@@ -103,11 +116,4 @@ public final class Constants {
         return brightnessLevels;
     }
 
-    public static int[] getSupportedAnimationPatternLengths() {
-        if (supportedAnimationPatternLengths == null)
-            supportedAnimationPatternLengths = ResourceUtils.getIntArray("glyph_settings_animations_supported_pattern_lengths");
-
-        return supportedAnimationPatternLengths;
-    }
-
 }
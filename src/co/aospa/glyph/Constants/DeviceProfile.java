@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Constants;
+
+import android.util.Log;
+
+import co.aospa.glyph.Music.MusicLayout;
+import co.aospa.glyph.Utils.ResourceUtils;
+
+/**
+ * Everything the LED paths need to know about the device, read from the
+ * phone1/phone2 resources once. Resource lookups go through
+ * Resources.getIdentifier, so hot paths read this snapshot instead.
+ */
+public final class DeviceProfile {
+
+    private static final String TAG = "GlyphDeviceProfile";
+    private static final boolean DEBUG = true;
+
+    // Frame lengths of the two animation formats
+    public static final int PHONE1_PATTERN_LENGTH = 5;
+    public static final int PHONE2_PATTERN_LENGTH = 33;
+
+    private static volatile DeviceProfile instance;
+
+    private final String device;
+    private final int ledCount;
+    private final int[] supportedPatternLengths;
+    private final int essentialLed;
+    private final boolean batteryDot;
+    private final int batteryLevels;
+    private final int volumeLevels;
+    private final String allPath;
+    private final String framePath;
+    private final String modePath;
+    private final String singlePath;
+    private final String powershareActivePath;
+    private final String powershareEnabledPath;
+    private final String ledSink;
+    private final String ledSinkPath;
+
+    public static DeviceProfile get() {
+        if (instance == null) {
+            synchronized (DeviceProfile.class) {
+                if (instance == null) instance = new DeviceProfile();
+            }
+        }
+        return instance;
+    }
+
+    private DeviceProfile() {
+        device = ResourceUtils.getString("glyph_settings_device");
+        supportedPatternLengths = ResourceUtils.getIntArray("glyph_settings_animations_supported_pattern_lengths");
+        int leds = 0;
+        for (int length : supportedPatternLengths) {
+            leds = Math.max(leds, length);
+        }
+        ledCount = leds;
+        essentialLed = ResourceUtils.getInteger("glyph_settings_notifs_essential_led");
+        batteryDot = ResourceUtils.getBoolean("glyph_settings_battery_dot");
+        batteryLevels = ResourceUtils.getInteger("glyph_settings_battery_levels_num");
+        volumeLevels = ResourceUtils.getInteger("glyph_settings_volume_levels_num");
+        allPath = ResourceUtils.getString("glyph_settings_paths_all_absolute");
+        framePath = ResourceUtils.getString("glyph_settings_paths_frame_absolute");
+        modePath = ResourceUtils.getString("glyph_settings_paths_mode_absolute");
+        singlePath = ResourceUtils.getString("glyph_settings_paths_single_absolute");
+        powershareActivePath = ResourceUtils.getString("glyph_settings_paths_powershare_active_absolute");
+        powershareEnabledPath = ResourceUtils.getString("glyph_settings_paths_powershare_enabled_absolute");
+        ledSink = ResourceUtils.getString("glyph_settings_led_sink");
+        ledSinkPath = ResourceUtils.getString("glyph_settings_paths_led_sink_absolute");
+        if (DEBUG) Log.d(TAG, "Loaded device profile | device: " + device + " | leds: " + ledCount
+                + " | essential led: " + essentialLed);
+    }
+
+    public String getDevice() {
+        return device;
+    }
+
+    // LEDs in a full frame of this device
+    public int getLedCount() {
+        return ledCount;
+    }
+
+    public boolean isSupportedPatternLength(int length) {
+        for (int supported : supportedPatternLengths) {
+            if (supported == length) return true;
+        }
+        return false;
+    }
+
+    // Index for the single LED node
+    public int getEssentialLed() {
+        return essentialLed;
+    }
+
+    // Index of the essential LED inside a frame, or -1 for unknown formats
+    public int getEssentialFrameLed(int length) {
+        if (length == PHONE1_PATTERN_LENGTH) return 1;
+        if (length == PHONE2_PATTERN_LENGTH) return 2;
+        return -1;
+    }
+
+    // Whether frames may address every LED of a Phone (2) pattern
+    public boolean hasPhone2Pattern() {
+        return isSupportedPatternLength(PHONE2_PATTERN_LENGTH);
+    }
+
+    // Music zones of the widest pattern this device supports
+    public MusicLayout getMusicLayout() {
+        return hasPhone2Pattern() ? MusicLayout.PHONE2 : MusicLayout.PHONE1;
+    }
+
+    public boolean hasBatteryDot() {
+        return batteryDot;
+    }
+
+    public int getBatteryLevels() {
+        return batteryLevels;
+    }
+
+    public int getVolumeLevels() {
+        return volumeLevels;
+    }
+
+    public String getAllPath() {
+        return allPath;
+    }
+
+    public String getFramePath() {
+        return framePath;
+    }
+
+    // Blank on devices without a mode node
+    public String getModePath() {
+        return modePath;
+    }
+
+    public String getSinglePath() {
+        return singlePath;
+    }
+
+    public String getPowershareActivePath() {
+        return powershareActivePath;
+    }
+
+    public String getPowershareEnabledPath() {
+        return powershareEnabledPath;
+    }
+
+    // LED output backend, sysfs, file or recording
+    public String getLedSink() {
+        return ledSink;
+    }
+
+    // Directory of the file LED sink
+    public String getLedSinkPath() {
+        return ledSinkPath;
+    }
+}
@@ -18,14 +18,19 @@ package co.aospa.glyph.Manager;
 
 import android.util.Log;
 
-import com.android.internal.util.ArrayUtils;
-
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.util.Arrays;
+import java.io.File;
+import java.io.PrintWriter;
 
 import co.aospa.glyph.Constants.Constants;
-import co.aospa.glyph.Utils.FileUtils;
+import co.aospa.glyph.Constants.DeviceProfile;
+import co.aospa.glyph.Sinks.FileLedSink;
+import co.aospa.glyph.Sinks.LedSink;
+import co.aospa.glyph.Sinks.RecordingLedSink;
+import co.aospa.glyph.Sinks.SysfsLedSink;
+import co.aospa.glyph.Utils.BrightnessTable;
+import co.aospa.glyph.Utils.FrameClock;
+import co.aospa.glyph.Utils.FrameUtils;
+import co.aospa.glyph.Utils.GlyphFrames;
 import co.aospa.glyph.Utils.ResourceUtils;
 
 public final class AnimationManager {
@@ -35,33 +40,54 @@ public final class AnimationManager {
     private static int[] batteryArrayDismiss;
     private static int[] volumeArrayDismiss;
 
-    private static boolean check(String name, boolean wait) {
-        if (DEBUG) Log.d(TAG, "Playing animation | name: " + name + " | waiting: " + Boolean.toString(wait));
+    // Reused output frame, guarded by frameLock
+    private static final Object frameLock = new Object();
+    private static int[] frameBuffer = new int[0];
 
-        if (StatusManager.isAllLedActive()) {
-            if (DEBUG) Log.d(TAG, "All LEDs are active, exiting animation | name: " + name);
-            return false;
+    private static volatile LedSink ledSink;
+
+    // Call animation played in passes, only used on the render thread
+    private static String callAnimation;
+    private static boolean callPassPosted;
+
+    public static LedSink getLedSink() {
+        LedSink sink = ledSink;
+        if (sink == null) {
+            synchronized (frameLock) {
+                if (ledSink == null) ledSink = createLedSink();
+                sink = ledSink;
+            }
         }
+        return sink;
+    }
 
-        if (StatusManager.isCallLedActive()) {
-            if (DEBUG) Log.d(TAG, "Call animation is currently active, exiting animation | name: " + name);
-            return false;
+    // Picked by glyph_settings_led_sink, the sysfs nodes unless set to file or recording
+    private static LedSink createLedSink() {
+        DeviceProfile profile = DeviceProfile.get();
+        if (DEBUG) Log.d(TAG, "Creating LED sink | type: " + profile.getLedSink());
+        switch (profile.getLedSink()) {
+            case "file":
+                return new FileLedSink(new File(profile.getLedSinkPath()));
+            case "recording":
+                return new RecordingLedSink();
+            default:
+                return SysfsLedSink.getInstance();
         }
+    }
 
-        if (StatusManager.isAnimationActive()) {
-            long start = System.currentTimeMillis();
-            if (wait) {
-                if (DEBUG) Log.d(TAG, "There is already an animation playing, wait | name: " + name);
-                while (StatusManager.isAnimationActive()) {
-                    if (System.currentTimeMillis() - start >= 2500) return false;
-                }
-            } else {
-                if (DEBUG) Log.d(TAG, "There is already an animation playing, exiting | name: " + name);
-                return false;
-            }
+    public static void dump(PrintWriter pw) {
+        LedSink sink = getLedSink();
+        pw.print("LED sink: " + sink.getClass().getSimpleName());
+        if (sink instanceof RecordingLedSink) {
+            RecordingLedSink recording = (RecordingLedSink) sink;
+            pw.print(" records=" + recording.getRecords().size() + " dropped=" + recording.getDropped());
         }
+        pw.println();
+    }
 
-        return true;
+    private static boolean check(String name, int priority) {
+        if (DEBUG) Log.d(TAG, "Playing animation | name: " + name);
+        return AnimationQueue.acquire(name, priority);
     }
 
     private static boolean checkInterruption(String name) {
@@ -73,52 +99,47 @@ public final class AnimationManager {
     }
 
     public static void playCsv(String name) {
-        playCsv(name, false);
+        playCsv(name, AnimationQueue.PRIORITY_NOTIFICATION);
     }
 
-    public static void playCsv(String name, boolean wait) {
-        if (!check(name, wait))
-                return;
+    public static void playCsv(String name, int priority) {
+        if (ResourceUtils.getAnimationInfo(name) == null) {
+            if (DEBUG) Log.d(TAG, "Skipping invalid animation | name: " + name);
+            return;
+        }
 
-        StatusManager.setAnimationActive(true);
+        if (!check(name, priority))
+                return;
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
-                ResourceUtils.getAnimation(name)))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
+        try {
+            GlyphFrames frames = ResourceUtils.getAnimationFrames(name);
+            FrameClock clock = new FrameClock(frames.getFramePeriod(), true);
+            for (int i = 0; i < frames.getFrameCount(); i = clock.awaitNextFrame()) {
                 if (checkInterruption("csv")) throw new InterruptedException();
-                line = line.replace(" ", "");
-                line = line.endsWith(",") ? line.substring(0, line.length() - 1) : line;
-                String[] pattern = line.split(",");
-                if (ArrayUtils.contains(Constants.getSupportedAnimationPatternLengths(), pattern.length)) {
-                    updateLedFrame(pattern);
-                } else {
-                    if (DEBUG) Log.d(TAG, "Animation line length mismatch | name: " + name + " | line: " + line);
-                    throw new InterruptedException();
-                }
-                Thread.sleep(17);
+                updateLedFrame(frames.getFrame(i));
             }
+            logFrameClock(name, clock);
         } catch (Exception e) {
             if (DEBUG) Log.d(TAG, "Exception while playing animation | name: " + name + " | exception: " + e);
         } finally {
-            updateLedFrame(new float[5]);
-            StatusManager.setAnimationActive(false);
+            updateLedFrame(new int[5]);
+            AnimationQueue.release();
             if (DEBUG) Log.d(TAG, "Done playing animation | name: " + name);
         }
     }
 
-    public static void playCharging(int batteryLevel, boolean wait) {
-        if (!check("charging", wait))
+    public static void playCharging(int batteryLevel) {
+        if (!check("charging", AnimationQueue.PRIORITY_LEVEL))
                 return;
 
-        StatusManager.setAnimationActive(true);
-
-        boolean batteryDot = ResourceUtils.getBoolean("glyph_settings_battery_dot");
-        int[] batteryArray = new int[ResourceUtils.getInteger("glyph_settings_battery_levels_num")];
+        DeviceProfile profile = DeviceProfile.get();
+        boolean batteryDot = profile.hasBatteryDot();
+        int[] batteryArray = new int[profile.getBatteryLevels()];
         int amount = (int) (Math.floor((batteryLevel / 100.0) * (batteryArray.length - (batteryDot ? 2 : 1))) + (batteryDot ? 2 : 1));
         int last = StatusManager.getChargingLedLast();
 
         try {
+            FrameClock clock = new FrameClock(FrameUtils.DEFAULT_FRAME_PERIOD, false);
             for (int i = 0; i < batteryArray.length; i++) {
                 if ( i <= amount - 1 && batteryLevel > 0) {
                     if (checkInterruption("charging")) throw new InterruptedException();
@@ -127,7 +148,7 @@ public final class AnimationManager {
                     if (batteryDot && i == 0) continue;
                     if (last == 0) {
                         updateLedFrame(batteryArray);
-                        Thread.sleep(17);
+                        clock.awaitNextFrame();
                     }
                 }
             }
@@ -141,7 +162,7 @@ public final class AnimationManager {
                 updateLedFrame(new int[batteryArray.length]);
             }
         } finally {
-            StatusManager.setAnimationActive(false);
+            AnimationQueue.release();
             batteryArrayDismiss = batteryArray;
             if (DEBUG) Log.d(TAG, "Done playing animation | name: charging");
         }
@@ -151,12 +172,11 @@ public final class AnimationManager {
         if (batteryArrayDismiss == null)
             return;
 
-        if (!check("Dismiss charging", false))
+        if (!check("Dismiss charging", AnimationQueue.PRIORITY_LEVEL))
             return;
 
-        StatusManager.setAnimationActive(true);
-
         try {
+            FrameClock clock = new FrameClock(FrameUtils.DEFAULT_FRAME_PERIOD, false);
             if (batteryLevel > 0) {
                 if (checkInterruption("charging")) throw new InterruptedException();
                 for (int i = batteryArrayDismiss.length - 1; i >= 0; i--) {
@@ -165,7 +185,7 @@ public final class AnimationManager {
                         StatusManager.setChargingLedLast(i);
                         batteryArrayDismiss[i] = 0;
                         updateLedFrame(batteryArrayDismiss);
-                        Thread.sleep(17);
+                        clock.awaitNextFrame();
                     }
                 }
             }
@@ -176,23 +196,22 @@ public final class AnimationManager {
             }
         } finally {
             StatusManager.setChargingLedLast(0);
-            StatusManager.setAnimationActive(false);
+            AnimationQueue.release();
             if (DEBUG) Log.d(TAG, "Done playing animation | name: Dismiss charging");
         }
     }
 
-    public static void playVolume(int volumeLevel, boolean wait) {
-        if (!check("volume", wait))
+    public static void playVolume(int volumeLevel) {
+        if (!check("volume", AnimationQueue.PRIORITY_LEVEL))
             return;
 
-        StatusManager.setAnimationActive(true);
-
-        int[] volumeArray = new int[ResourceUtils.getInteger("glyph_settings_volume_levels_num")];
+        int[] volumeArray = new int[DeviceProfile.get().getVolumeLevels()];
         int amount = (int) (Math.floor((volumeLevel / 100D) * (volumeArray.length - 1)) + 1);
         int last = StatusManager.getVolumeLedLast();
         int next_led = amount - 1;
 
         try {
+            FrameClock clock = new FrameClock(FrameUtils.DEFAULT_FRAME_PERIOD, false);
             for (int i = 0; i < volumeArray.length; i++) {
                 if (volumeLevel == 0) {
                     if (checkInterruption("volume")) throw new InterruptedException();
@@ -205,7 +224,7 @@ public final class AnimationManager {
                     volumeArray[i] = Constants.getBrightness();
                     if (last == 0) {
                         updateLedFrame(volumeArray);
-                        Thread.sleep(17);
+                        clock.awaitNextFrame();
                     }
                 }
             }
@@ -219,7 +238,7 @@ public final class AnimationManager {
                 updateLedFrame(new int[volumeArray.length]);
             }
         } finally {
-            StatusManager.setAnimationActive(false);
+            AnimationQueue.release();
             volumeArrayDismiss = volumeArray;
             if (DEBUG) Log.d(TAG, "Done playing animation | name: volume");
         }
@@ -229,12 +248,11 @@ public final class AnimationManager {
         if (volumeArrayDismiss == null)
             return;
 
-        if (!check("Dismiss volume", false))
+        if (!check("Dismiss volume", AnimationQueue.PRIORITY_LEVEL))
             return;
 
-        StatusManager.setAnimationActive(true);   
-
         try {
+            FrameClock clock = new FrameClock(FrameUtils.DEFAULT_FRAME_PERIOD, false);
             if (volumeLevel > 0) {
                 if (checkInterruption("volume")) throw new InterruptedException();
                 for (int i = volumeArrayDismiss.length - 1; i >= 0; i--) {
@@ -243,7 +261,7 @@ public final class AnimationManager {
                         StatusManager.setVolumeLedLast(i);
                         volumeArrayDismiss[i] = 0;
                         updateLedFrame(volumeArrayDismiss);
-                        Thread.sleep(17);
+                        clock.awaitNextFrame();
                     }
                 }
             }
@@ -254,7 +272,7 @@ public final class AnimationManager {
             }
         } finally {
             StatusManager.setVolumeLedLast(0);
-            StatusManager.setAnimationActive(false);
+            AnimationQueue.release();
             if (DEBUG) Log.d(TAG, "Done playing animation | name: Dismiss volume");
         }
     }
@@ -262,67 +280,111 @@ public final class AnimationManager {
     public static void playCall(String name) {
         StatusManager.setCallLedEnabled(true);
 
-        if (!check("call: " + name, true))
+        if (ResourceUtils.getCallAnimationInfo(name) == null) {
+            if (DEBUG) Log.d(TAG, "Skipping invalid call animation | name: " + name);
             return;
+        }
 
-        StatusManager.setCallLedActive(true);
-
-        while (StatusManager.isCallLedEnabled()) {
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
-                    ResourceUtils.getCallAnimation(name)))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    if (checkInterruption("call")) throw new InterruptedException();
-                    line = line.replace(" ", "");
-                    line = line.endsWith(",") ? line.substring(0, line.length() - 1) : line;
-                    String[] pattern = line.split(",");
-                    if (ArrayUtils.contains(Constants.getSupportedAnimationPatternLengths(), pattern.length)) {
-                        updateLedFrame(pattern);
-                    } else {
-                        if (DEBUG) Log.d(TAG, "Animation line length mismatch | name: " + name + " | line: " + line);
-                        throw new InterruptedException();
-                    }
-                    Thread.sleep(17);
-                }
-            } catch (Exception e) {
-                if (DEBUG) Log.d(TAG, "Exception while playing animation | name: " + name + " | exception: " + e);
-            } finally {
-                if (StatusManager.isAllLedActive()) {
-                    if (DEBUG) Log.d(TAG, "All LED active, pause playing animation | name: " + name);
-                    while (StatusManager.isAllLedActive()) {}
-                }
+        callAnimation = name;
+        postCallPass();
+    }
+
+    /**
+     * Plays the call animation once and posts itself again until the call
+     * ends, so the render thread stays free for the torch in between. While
+     * all LEDs are on no pass is posted, setAllLeds() resumes the animation.
+     */
+    private static void playCallPass() {
+        callPassPosted = false;
+        String name = callAnimation;
+        if (name == null || !StatusManager.isCallLedEnabled()) return;
+
+        if (StatusManager.isAllLedActive()) {
+            if (DEBUG) Log.d(TAG, "All LED active, pause playing animation | name: " + name);
+            return;
+        }
+
+        if (!StatusManager.isCallLedActive()) {
+            if (!check("call: " + name, AnimationQueue.PRIORITY_CALL))
+                return;
+            StatusManager.setCallLedActive(true);
+        }
+
+        try {
+            GlyphFrames frames = ResourceUtils.getCallAnimationFrames(name);
+            FrameClock clock = new FrameClock(frames.getFramePeriod(), true);
+            for (int i = 0; i < frames.getFrameCount(); i = clock.awaitNextFrame()) {
+                if (checkInterruption("call")) throw new InterruptedException();
+                updateLedFrame(frames.getFrame(i));
             }
+            logFrameClock(name, clock);
+        } catch (Exception e) {
+            if (DEBUG) Log.d(TAG, "Exception while playing animation | name: " + name + " | exception: " + e);
         }
+
+        postCallPass();
+    }
+
+    private static void postCallPass() {
+        if (callPassPosted) return;
+        callPassPosted = true;
+        RenderThread.post(AnimationManager::playCallPass);
     }
 
     public static void stopCall() {
         if (DEBUG) Log.d(TAG, "Disabling Call Animation");
         StatusManager.setCallLedEnabled(false);
-        updateLedFrame(new float[5]);
-        StatusManager.setCallLedActive(false);
-        if (DEBUG) Log.d(TAG, "Done playing Call Animation");
+        RenderThread.post(() -> {
+            callAnimation = null;
+            if (!StatusManager.isAllLedActive()) {
+                updateLedFrame(new int[5]);
+            }
+            if (StatusManager.isCallLedActive()) {
+                StatusManager.setCallLedActive(false);
+                AnimationQueue.release();
+            }
+            if (DEBUG) Log.d(TAG, "Done playing Call Animation");
+        });
+    }
+
+    /**
+     * Turns all LEDs on or off for the torch. The flag is set right away so
+     * that a playing animation stops at its next frame, and the write jumps
+     * the render thread queue.
+     */
+    public static void setAllLeds(boolean enabled) {
+        StatusManager.setAllLedsActive(enabled);
+        RenderThread.getHandler().postAtFrontOfQueue(() -> {
+            // A later toggle was posted ahead of this one and already wrote its state
+            if (StatusManager.isAllLedActive() != enabled) return;
+            getLedSink().writeAll(enabled ? Constants.getMaxBrightness() : 0);
+            if (enabled) return;
+            if (StatusManager.isEssentialLedActive())
+                getLedSink().writeSingle(DeviceProfile.get().getEssentialLed(),
+                        Constants.getMaxBrightness() / 100 * 7);
+            if (StatusManager.isCallLedEnabled()) postCallPass();
+        });
     }
 
     public static void playEssential() {
         if (DEBUG) Log.d(TAG, "Playing Essential Animation");
-        int led = ResourceUtils.getInteger("glyph_settings_notifs_essential_led");
+        int led = DeviceProfile.get().getEssentialLed();
         if (!StatusManager.isEssentialLedActive()) {
-                if (!check("essential", true))
+                if (!check("essential", AnimationQueue.PRIORITY_ESSENTIAL))
                     return;
 
-                StatusManager.setAnimationActive(true);
-
                 try {
                     if (checkInterruption("essential")) throw new InterruptedException();
+                    FrameClock clock = new FrameClock(FrameUtils.DEFAULT_FRAME_PERIOD, false);
                     int[] steps = {12, 24, 36, 50};
                     for (int i : steps) {
                         if (checkInterruption("essential")) throw new InterruptedException();
                         updateLedSingle(led, Constants.getMaxBrightness() / 100 * i);
-                        Thread.sleep(17);
+                        clock.awaitNextFrame();
                     }
                 } catch (InterruptedException e) {}
 
-                StatusManager.setAnimationActive(false);
+                AnimationQueue.release();
                 StatusManager.setEssentialLedActive(true);
                 if (DEBUG) Log.d(TAG, "Done playing animation | name: essential");
         } else {
@@ -334,100 +396,55 @@ public final class AnimationManager {
     public static void stopEssential() {
         if (DEBUG) Log.d(TAG, "Disabling Essential Animation");
         StatusManager.setEssentialLedActive(false);
-        if (!StatusManager.isAnimationActive() && !StatusManager.isAllLedActive()) {
-            int led = ResourceUtils.getInteger("glyph_settings_notifs_essential_led");
-            updateLedSingle(led, 0);
-        }
+        RenderThread.post(() -> {
+            if (!StatusManager.isAnimationActive() && !StatusManager.isAllLedActive()) {
+                int led = DeviceProfile.get().getEssentialLed();
+                updateLedSingle(led, 0);
+            }
+        });
     }
 
-    public static void playMusic(String name) {
-        float maxBrightness = (float) Constants.getMaxBrightness();
-        float[] pattern = new float[5];
-
-        switch (name) {
-            case "low":
-                pattern[4] = maxBrightness;
-                break;
-            case "mid_low":
-                pattern[3] = maxBrightness;
-                break;
-            case "mid":
-                pattern[2] = maxBrightness;
-                break;
-            case "mid_high":
-                pattern[0] = maxBrightness;
-                break;
-            case "high":
-                pattern[1] = maxBrightness;
-                break;
-            default:
-                if (DEBUG) Log.d(TAG, "Name doesn't match any zone, returning | name: " + name);
-                return;
-        }
-
-        try {
-            updateLedFrame(pattern);
-            Thread.sleep(85);
-        } catch (Exception e) {
-            if (DEBUG) Log.d(TAG, "Exception while playing animation | name: music: " + name + " | exception: " + e);
-        } finally {
-            updateLedFrame(new float[5]);
-            if (DEBUG) Log.d(TAG, "Done playing animation | name: " + name);
-        }
+    // Shows a music visualizer frame, only to be called from the render thread
+    public static void updateMusicFrame(int[] pattern) {
+        if (checkInterruption("music")) return;
+        updateLedFrame(pattern);
     }
 
-    private static void updateLedFrame(String[] pattern) {
-        updateLedFrame(Arrays.stream(pattern)
-                .mapToInt(Integer::parseInt)
-                .toArray());
+    private static void logFrameClock(String name, FrameClock clock) {
+        if (DEBUG && clock.getLateFrames() > 0) Log.d(TAG, "Animation fell behind | name: " + name
+                + " | late frames: " + clock.getLateFrames() + " | dropped frames: " + clock.getDroppedFrames());
     }
 
     private static void updateLedFrame(int[] pattern) {
-        float[] floatPattern = new float[pattern.length];
-        for (int i = 0; i < pattern.length; i++) {
-            floatPattern[i] = (float) pattern[i];
-        }
-        updateLedFrame(floatPattern);
-    }
-
-    private static void updateLedFrame(float[] pattern) {
         //if (DEBUG) Log.d(TAG, "Updating pattern: " + pattern);
-        float maxBrightness = (float) Constants.getMaxBrightness();
-        int essentialLed = ResourceUtils.getInteger("glyph_settings_notifs_essential_led");
-        if (StatusManager.isEssentialLedActive()) {
-            if (pattern.length == 5) { // Phone (1) pattern
-                if (pattern[1] < (maxBrightness / 100 * 50)) {
-                    pattern[1] = maxBrightness / 100 * 50;
-                }
-            } else if (pattern.length == 33) { // Phone (2) pattern
-                if (pattern[2] < (maxBrightness / 100 * 50)) {
-                    pattern[2] = maxBrightness / 100 * 50;
-                }
+        synchronized (frameLock) {
+            if (frameBuffer.length != pattern.length) {
+                frameBuffer = new int[pattern.length];
             }
+            Constants.getBrightnessTable().scaleFrame(pattern, frameBuffer,
+                    getEssentialFrameLed(pattern.length));
+            getLedSink().writeFrame(frameBuffer);
         }
-        for (int i = 0; i < pattern.length; i++) {
-            pattern[i] = pattern[i] / maxBrightness * Constants.getBrightness();
-        }
-        FileUtils.writeFrameLed(pattern);
     }
 
-    private static void updateLedSingle(int led, String brightness) {
-        updateLedSingle(led, Float.parseFloat(brightness));
+    private static int getEssentialFrameLed(int length) {
+        if (!StatusManager.isEssentialLedActive()) return -1;
+        return DeviceProfile.get().getEssentialFrameLed(length);
     }
 
-    private static void updateLedSingle(int led, int brightness) {
-        updateLedSingle(led, (float) brightness);
+    private static float getEssentialBrightness() {
+        return Constants.getBrightnessTable().getEssentialBrightness();
     }
 
-    private static void updateLedSingle(int led, float brightness) {
+    private static void updateLedSingle(int led, int brightness) {
         //if (DEBUG) Log.d(TAG, "Updating led | led: " + led + " | brightness: " + brightness);
-        float maxBrightness = (float) Constants.getMaxBrightness();
-        int essentialLed = ResourceUtils.getInteger("glyph_settings_notifs_essential_led");
+        BrightnessTable table = Constants.getBrightnessTable();
         if (StatusManager.isEssentialLedActive()
-                && led == essentialLed
-                && brightness < (maxBrightness / 100 * 50)) {
-            brightness = maxBrightness / 100 * 50;
+                && led == DeviceProfile.get().getEssentialLed()
+                && brightness < getEssentialBrightness()) {
+            getLedSink().writeSingle(led, table.scale(getEssentialBrightness()));
+        } else {
+            getLedSink().writeSingle(led, table.scale(brightness));
         }
-        FileUtils.writeSingleLed(led, brightness / maxBrightness * Constants.getBrightness());
     }
 }
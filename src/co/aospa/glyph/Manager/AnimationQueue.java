@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Manager;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.PriorityQueue;
+
+/**
+ * Orders the animations waiting for the render thread. Animations are
+ * submitted with a priority and the render thread always runs the highest
+ * priority one next, then in arrival order. As they run one after another
+ * nothing ever waits for the LEDs: an animation that is blocked by the torch
+ * or a call when its turn comes is dropped. An animation may also carry a
+ * deadline, after which it is dropped instead of playing late.
+ */
+public final class AnimationQueue {
+
+    private static final String TAG = "GlyphAnimationQueue";
+    private static final boolean DEBUG = true;
+
+    public static final int PRIORITY_LEVEL = 0; // Volume and charging
+    public static final int PRIORITY_NOTIFICATION = 1;
+    public static final int PRIORITY_ESSENTIAL = 2;
+    public static final int PRIORITY_CALL = 3;
+
+    // How long a notification may wait for its turn, in ms
+    public static final long NOTIFICATION_TIMEOUT = 2500;
+
+    private static final PriorityQueue<Request> pending = new PriorityQueue<>(11,
+            (a, b) -> a.priority != b.priority
+                    ? Integer.compare(b.priority, a.priority)
+                    : Long.compare(a.sequence, b.sequence));
+
+    // Guarded by pending
+    private static long sequence = 0;
+
+    private static final class Request {
+        final Runnable animation;
+        // Run instead of the animation once it expired, may be null
+        final Runnable expired;
+        final int priority;
+        final long sequence;
+        // Uptime after which the animation is dropped, 0 if it never expires
+        final long deadline;
+
+        Request(Runnable animation, Runnable expired, int priority, long sequence, long deadline) {
+            this.animation = animation;
+            this.expired = expired;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.deadline = deadline;
+        }
+    }
+
+    /** Queues an animation to run on the render thread. */
+    public static void submit(int priority, Runnable animation) {
+        submit(priority, 0, animation, null);
+    }
+
+    /**
+     * Queues an animation that is dropped if it did not start within timeout
+     * ms, running expired on the render thread instead. A timeout of 0 never
+     * expires.
+     */
+    public static void submit(int priority, long timeout, Runnable animation, Runnable expired) {
+        long deadline = timeout > 0 ? SystemClock.uptimeMillis() + timeout : 0;
+        synchronized (pending) {
+            pending.add(new Request(animation, expired, priority, sequence++, deadline));
+        }
+        RenderThread.post(AnimationQueue::runNext);
+    }
+
+    /** Drops an animation that has not started yet. */
+    public static void remove(Runnable animation) {
+        synchronized (pending) {
+            pending.removeIf(request -> request.animation == animation);
+        }
+    }
+
+    // One is posted per submitted animation, so the queue drains in step
+    private static void runNext() {
+        Request request;
+        synchronized (pending) {
+            request = pending.poll();
+        }
+        if (request == null) return;
+        if (request.deadline > 0 && SystemClock.uptimeMillis() > request.deadline) {
+            if (DEBUG) Log.d(TAG, "Waited too long, dropping animation | priority: " + request.priority);
+            if (request.expired != null) request.expired.run();
+            return;
+        }
+        request.animation.run();
+    }
+
+    /**
+     * Takes the LEDs for an animation, only to be called from the render
+     * thread. Returns false if the animation must not play.
+     */
+    public static boolean acquire(String name, int priority) {
+        if (isBlocked(name, priority)) return false;
+        if (StatusManager.tryStartAnimation(getBlockingFlags(priority))) return true;
+        if (DEBUG) Log.d(TAG, "There is already an animation playing, exiting | name: " + name);
+        return false;
+    }
+
+    public static void release() {
+        StatusManager.setAnimationActive(false);
+    }
+
+    private static int getBlockingFlags(int priority) {
+        return priority < PRIORITY_CALL
+                ? StatusManager.FLAG_ALL_LED_ACTIVE | StatusManager.FLAG_CALL_LED_ACTIVE
+                : StatusManager.FLAG_ALL_LED_ACTIVE;
+    }
+
+    private static boolean isBlocked(String name, int priority) {
+        if (StatusManager.isAllLedActive()) {
+            if (DEBUG) Log.d(TAG, "All LEDs are active, exiting animation | name: " + name);
+            return true;
+        }
+
+        if (priority < PRIORITY_CALL && StatusManager.isCallLedActive()) {
+            if (DEBUG) Log.d(TAG, "Call animation is currently active, exiting animation | name: " + name);
+            return true;
+        }
+
+        return false;
+    }
+}
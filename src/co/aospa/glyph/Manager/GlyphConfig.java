@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Manager;
+
+import android.content.ContentResolver;
+import android.content.SharedPreferences;
+import android.provider.Settings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import co.aospa.glyph.Constants.Constants;
+import co.aospa.glyph.Rules.NotificationRule;
+import co.aospa.glyph.Rules.NotificationRules;
+import co.aospa.glyph.Utils.ResourceUtils;
+
+/**
+ * Immutable snapshot of the glyph settings. SettingsManager publishes a new
+ * one whenever a setting or preference changes, so reading it involves no
+ * binder calls and no allocations.
+ */
+public final class GlyphConfig {
+
+    private final boolean glyphEnabled;
+    private final boolean callEnabled;
+    private final boolean notifsEnabled;
+    private final boolean flipEnabled;
+    private final boolean chargingEnabled;
+    private final boolean powershareEnabled;
+    private final boolean musicVisualizerEnabled;
+    private final boolean volumeLevelEnabled;
+    private final String callAnimation;
+    private final String notifsAnimation;
+    private final Set<String> disabledApps;
+    private final Set<String> essentialApps;
+    private final NotificationRules notificationRules;
+
+    GlyphConfig(ContentResolver resolver, SharedPreferences preferences) {
+        glyphEnabled = Settings.Secure.getInt(resolver, Constants.GLYPH_ENABLE, 1) != 0;
+        callEnabled = Settings.Secure.getInt(resolver, Constants.GLYPH_CALL_ENABLE, 1) != 0 && glyphEnabled;
+        notifsEnabled = Settings.Secure.getInt(resolver, Constants.GLYPH_NOTIFS_ENABLE, 1) != 0 && glyphEnabled;
+        flipEnabled = preferences.getBoolean(Constants.GLYPH_FLIP_ENABLE, false) && glyphEnabled;
+        chargingEnabled = preferences.getBoolean(Constants.GLYPH_CHARGING_LEVEL_ENABLE, false) && glyphEnabled;
+        powershareEnabled = preferences.getBoolean(Constants.GLYPH_CHARGING_POWERSHARE_ENABLE, false) && glyphEnabled;
+        musicVisualizerEnabled = preferences.getBoolean(Constants.GLYPH_MUSIC_VISUALIZER_ENABLE, false) && glyphEnabled;
+        volumeLevelEnabled = preferences.getBoolean(Constants.GLYPH_VOLUME_LEVEL_ENABLE, false) && glyphEnabled;
+        callAnimation = preferences.getString(Constants.GLYPH_CALL_SUB_ANIMATIONS,
+                ResourceUtils.getString("glyph_settings_call_animations_default"));
+        notifsAnimation = preferences.getString(Constants.GLYPH_NOTIFS_SUB_ANIMATIONS,
+                ResourceUtils.getString("glyph_settings_notifs_animations_default"));
+
+        // Apps are enabled by default and stored as a boolean keyed by package name
+        Set<String> disabled = new HashSet<>();
+        Map<String, String> appAnimations = new HashMap<>();
+        for (Map.Entry<String, ?> entry : preferences.getAll().entrySet()) {
+            String key = entry.getKey();
+            if (Boolean.FALSE.equals(entry.getValue())) {
+                disabled.add(key);
+            } else if (key.startsWith(Constants.GLYPH_NOTIFS_SUB_APP_ANIMATION)
+                    && entry.getValue() instanceof String) {
+                appAnimations.put(key.substring(Constants.GLYPH_NOTIFS_SUB_APP_ANIMATION.length()),
+                        (String) entry.getValue());
+            }
+        }
+        disabledApps = Collections.unmodifiableSet(disabled);
+        essentialApps = Collections.unmodifiableSet(new HashSet<>(
+                preferences.getStringSet(Constants.GLYPH_NOTIFS_SUB_ESSENTIAL, Collections.emptySet())));
+        notificationRules = compileNotificationRules(appAnimations);
+    }
+
+    /**
+     * System rules come first so user settings cannot re-enable ignored
+     * packages. Every app with user settings gets one package rule, anything
+     * else falls through to the global animation.
+     */
+    private NotificationRules compileNotificationRules(Map<String, String> appAnimations) {
+        List<NotificationRule> rules = new ArrayList<>();
+        for (String app : Constants.APPS_TO_IGNORE) {
+            rules.add(NotificationRule.ignore(app, null));
+        }
+        for (String notif : Constants.NOTIFS_TO_IGNORE) {
+            int separator = notif.indexOf(':');
+            rules.add(NotificationRule.ignore(notif.substring(0, separator), notif.substring(separator + 1)));
+        }
+
+        Set<String> apps = new HashSet<>(disabledApps);
+        apps.addAll(essentialApps);
+        apps.addAll(appAnimations.keySet());
+        for (String app : apps) {
+            String animation = appAnimations.get(app);
+            rules.add(new NotificationRule(app, null, null, NotificationRule.IMPORTANCE_ANY, null,
+                    !disabledApps.contains(app), essentialApps.contains(app),
+                    animation != null ? animation : notifsAnimation,
+                    AnimationQueue.PRIORITY_NOTIFICATION));
+        }
+
+        return new NotificationRules(rules, new NotificationRule(null, null, null,
+                NotificationRule.IMPORTANCE_ANY, null, true, false, notifsAnimation,
+                AnimationQueue.PRIORITY_NOTIFICATION));
+    }
+
+    public boolean isGlyphEnabled() {
+        return glyphEnabled;
+    }
+
+    public boolean isCallEnabled() {
+        return callEnabled;
+    }
+
+    public boolean isNotifsEnabled() {
+        return notifsEnabled;
+    }
+
+    public boolean isFlipEnabled() {
+        return flipEnabled;
+    }
+
+    public boolean isChargingEnabled() {
+        return chargingEnabled;
+    }
+
+    public boolean isPowershareEnabled() {
+        return powershareEnabled;
+    }
+
+    public boolean isMusicVisualizerEnabled() {
+        return musicVisualizerEnabled;
+    }
+
+    public boolean isVolumeLevelEnabled() {
+        return volumeLevelEnabled;
+    }
+
+    public String getCallAnimation() {
+        return callAnimation;
+    }
+
+    public String getNotifsAnimation() {
+        return notifsAnimation;
+    }
+
+    public NotificationRules getNotificationRules() {
+        return notificationRules;
+    }
+
+    public boolean isNotifsAppEnabled(String app) {
+        return notifsEnabled && !disabledApps.contains(app);
+    }
+
+    public boolean isNotifsAppEssential(String app) {
+        return notifsEnabled && essentialApps.contains(app);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Manager;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * The one thread that drives the LEDs. Services post their animations here
+ * instead of running their own threads, so frames from different sources are
+ * never interleaved and each animation keeps its own timing. Runnables should
+ * be posted as they would be to any other Handler; long running animations
+ * are cut short through StatusManager, not by interrupting the thread.
+ */
+public final class RenderThread {
+
+    private static final String TAG = "GlyphRenderThread";
+    private static final boolean DEBUG = true;
+
+    private static HandlerThread thread;
+    private static Handler handler;
+
+    public static synchronized Handler getHandler() {
+        if (handler == null) {
+            if (DEBUG) Log.d(TAG, "Starting render thread");
+            thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_DISPLAY);
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+        return handler;
+    }
+
+    public static void post(Runnable runnable) {
+        getHandler().post(runnable);
+    }
+}
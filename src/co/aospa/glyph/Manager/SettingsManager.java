@@ -17,19 +17,19 @@
 package co.aospa.glyph.Manager;
 
 import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.ContentObserver;
+import android.os.Handler;
+import android.os.Looper;
 import android.provider.Settings;
 import android.util.Log;
 
 import androidx.preference.PreferenceManager;
 
-import com.android.internal.util.ArrayUtils;
-
-import java.util.HashSet;
-import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import co.aospa.glyph.Constants.Constants;
 import co.aospa.glyph.Utils.FileUtils;
-import co.aospa.glyph.Utils.ResourceUtils;
 
 public final class SettingsManager {
 
@@ -38,19 +38,81 @@ public final class SettingsManager {
 
     private static Context context = Constants.CONTEXT;
 
+    public interface OnConfigChangedListener {
+        void onConfigChanged(GlyphConfig config);
+    }
+
+    private static volatile GlyphConfig config;
+    private static final CopyOnWriteArrayList<OnConfigChangedListener> listeners = new CopyOnWriteArrayList<>();
+
+    private static SharedPreferences preferences;
+
+    private static final ContentObserver settingObserver = new ContentObserver(new Handler(Looper.getMainLooper())) {
+        @Override
+        public void onChange(boolean selfChange) {
+            if (DEBUG) Log.d(TAG, "SettingObserver: onChange");
+            reloadConfig();
+        }
+    };
+
+    // Held strongly, SharedPreferences only keeps weak references to listeners
+    private static final SharedPreferences.OnSharedPreferenceChangeListener preferenceListener =
+            (prefs, key) -> reloadConfig();
+
+    /**
+     * Current settings snapshot. Built on first use, then replaced whenever a
+     * glyph setting or preference changes.
+     */
+    public static GlyphConfig getConfig() {
+        GlyphConfig current = config;
+        if (current == null) {
+            synchronized (SettingsManager.class) {
+                if (config == null) {
+                    preferences = PreferenceManager.getDefaultSharedPreferences(context);
+                    preferences.registerOnSharedPreferenceChangeListener(preferenceListener);
+                    for (String setting : new String[] { Constants.GLYPH_ENABLE,
+                            Constants.GLYPH_CALL_ENABLE, Constants.GLYPH_NOTIFS_ENABLE }) {
+                        context.getContentResolver().registerContentObserver(
+                                Settings.Secure.getUriFor(setting), false, settingObserver);
+                    }
+                    config = new GlyphConfig(context.getContentResolver(), preferences);
+                }
+                current = config;
+            }
+        }
+        return current;
+    }
+
+    public static void addOnConfigChangedListener(OnConfigChangedListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public static void removeOnConfigChangedListener(OnConfigChangedListener listener) {
+        listeners.remove(listener);
+    }
+
+    private static void reloadConfig() {
+        GlyphConfig current;
+        synchronized (SettingsManager.class) {
+            if (config == null) return;
+            current = new GlyphConfig(context.getContentResolver(), preferences);
+            config = current;
+        }
+        for (OnConfigChangedListener listener : listeners) {
+            listener.onConfigChanged(current);
+        }
+    }
+
     public static boolean enableGlyph(boolean enable) {
-        return Settings.Secure.putInt(context.getContentResolver(),
-                Constants.GLYPH_ENABLE, enable ? 1 : 0);
+        return putSecureInt(Constants.GLYPH_ENABLE, enable ? 1 : 0);
     }
 
     public static boolean isGlyphEnabled() {
-        return Settings.Secure.getInt(context.getContentResolver(),
-                Constants.GLYPH_ENABLE, 1) != 0;
+        return getConfig().isGlyphEnabled();
     }
 
     public static boolean isGlyphFlipEnabled() {
-        return PreferenceManager.getDefaultSharedPreferences(context)
-                .getBoolean(Constants.GLYPH_FLIP_ENABLE, false) && isGlyphEnabled();
+        return getConfig().isFlipEnabled();
     }
 
     public static int getGlyphBrightness() {
@@ -66,65 +128,59 @@ public final class SettingsManager {
     }
 
     public static boolean isGlyphChargingEnabled() {
-        return PreferenceManager.getDefaultSharedPreferences(context)
-                .getBoolean(Constants.GLYPH_CHARGING_LEVEL_ENABLE, false) && isGlyphEnabled();
+        return getConfig().isChargingEnabled();
     }
 
     public static boolean isGlyphPowershareEnabled() {
-        return PreferenceManager.getDefaultSharedPreferences(context)
-                .getBoolean(Constants.GLYPH_CHARGING_POWERSHARE_ENABLE, false) && isGlyphEnabled();
+        return getConfig().isPowershareEnabled();
     }
 
     public static boolean isGlyphCallEnabled() {
-        return Settings.Secure.getInt(context.getContentResolver(),
-                Constants.GLYPH_CALL_ENABLE, 1) != 0 && isGlyphEnabled();
+        return getConfig().isCallEnabled();
     }
 
     public static boolean setGlyphCallEnabled(boolean enable) {
-        return Settings.Secure.putInt(context.getContentResolver(),
-                Constants.GLYPH_CALL_ENABLE, enable ? 1 : 0);
+        return putSecureInt(Constants.GLYPH_CALL_ENABLE, enable ? 1 : 0);
     }
 
     public static String getGlyphCallAnimation() {
-        return PreferenceManager.getDefaultSharedPreferences(context)
-                .getString(Constants.GLYPH_CALL_SUB_ANIMATIONS,
-                        ResourceUtils.getString("glyph_settings_call_animations_default"));
+        return getConfig().getCallAnimation();
     }
 
     public static boolean isGlyphMusicVisualizerEnabled() {
-        return PreferenceManager.getDefaultSharedPreferences(context)
-                .getBoolean(Constants.GLYPH_MUSIC_VISUALIZER_ENABLE, false) && isGlyphEnabled();
+        return getConfig().isMusicVisualizerEnabled();
     }
 
     public static boolean isGlyphVolumeLevelEnabled() {
-        return PreferenceManager.getDefaultSharedPreferences(context)
-                .getBoolean(Constants.GLYPH_VOLUME_LEVEL_ENABLE, false) && isGlyphEnabled();
+        return getConfig().isVolumeLevelEnabled();
     }
 
     public static boolean isGlyphNotifsEnabled() {
-        return Settings.Secure.getInt(context.getContentResolver(),
-                Constants.GLYPH_NOTIFS_ENABLE, 1) != 0 && isGlyphEnabled();
+        return getConfig().isNotifsEnabled();
     }
 
     public static boolean setGlyphNotifsEnabled(boolean enable) {
-        return Settings.Secure.putInt(context.getContentResolver(),
-                Constants.GLYPH_NOTIFS_ENABLE, enable ? 1 : 0);
+        return putSecureInt(Constants.GLYPH_NOTIFS_ENABLE, enable ? 1 : 0);
     }
 
     public static String getGlyphNotifsAnimation() {
-        return PreferenceManager.getDefaultSharedPreferences(context)
-                .getString(Constants.GLYPH_NOTIFS_SUB_ANIMATIONS,
-                        ResourceUtils.getString("glyph_settings_notifs_animations_default"));
+        return getConfig().getNotifsAnimation();
     }
 
     public static boolean isGlyphNotifsAppEnabled(String app) {
-        return PreferenceManager.getDefaultSharedPreferences(context)
-                .getBoolean(app, true) && isGlyphNotifsEnabled();
+        return getConfig().isNotifsAppEnabled(app);
     }
 
     public static boolean isGlyphNotifsAppEssential(String app) {
-        Set<String> selectedValues = PreferenceManager.getDefaultSharedPreferences(context)
-                .getStringSet(Constants.GLYPH_NOTIFS_SUB_ESSENTIAL , new HashSet<String>());
-        return selectedValues.contains(app) && isGlyphNotifsEnabled();
+        return getConfig().isNotifsAppEssential(app);
+    }
+
+    // Reload right away so callers read back what they wrote, the observer
+    // only fires asynchronously
+    private static boolean putSecureInt(String setting, int value) {
+        boolean result = Settings.Secure.putInt(context.getContentResolver(), setting, value);
+        getConfig();
+        reloadConfig();
+        return result;
     }
 }
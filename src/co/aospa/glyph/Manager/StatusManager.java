@@ -16,74 +16,116 @@
 
 package co.aospa.glyph.Manager;
 
+import android.util.Log;
+
+/**
+ * Glyph state packed into a single atomic StatusWord, so every reader sees a
+ * consistent snapshot and every transition is one compare and set:
+ *
+ *   bits  0-7   flags below
+ *   bits  8-15  last charging LED
+ *   bits 16-23  last volume LED
+ *
+ * Listeners are called on the thread that made the change, after it has
+ * been published, and only when the state actually changed.
+ */
 public final class StatusManager {
 
     private static final String TAG = "GlyphStatusManager";
     private static final boolean DEBUG = true;
 
-    private static boolean allLedActive = false;
-    private static boolean animationActive = false;
-    private static boolean callLedActive = false;
-    private static boolean essentialLedActive = false;
-    private static int volumeLedLast = 0;
-    private static int chargingLedLast = 0;
+    public static final int FLAG_ANIMATION_ACTIVE = 1 << 0;
+    public static final int FLAG_ALL_LED_ACTIVE = 1 << 1;
+    public static final int FLAG_CALL_LED_ACTIVE = 1 << 2;
+    public static final int FLAG_CALL_LED_ENABLED = 1 << 3;
+    public static final int FLAG_ESSENTIAL_LED_ACTIVE = 1 << 4;
+
+    private static final int CHARGING_LED_SHIFT = 8;
+    private static final int VOLUME_LED_SHIFT = 16;
+
+    private static final StatusWord state = new StatusWord();
+
+    public static void addListener(StatusWord.Listener listener) {
+        state.addListener(listener);
+    }
+
+    public static void removeListener(StatusWord.Listener listener) {
+        state.removeListener(listener);
+    }
 
-    private static boolean callLedEnabled = false;
+    public static int getState() {
+        return state.get();
+    }
 
     public static boolean isAnimationActive() {
-        return animationActive;
+        return state.isSet(FLAG_ANIMATION_ACTIVE);
     }
 
     public static void setAnimationActive(boolean status) {
-        animationActive = status;
+        state.setFlag(FLAG_ANIMATION_ACTIVE, status);
+    }
+
+    /**
+     * Marks an animation active unless one already is, or unless any of the
+     * blocking flags is set. Returns whether the animation may start.
+     */
+    public static boolean tryStartAnimation(int blockingFlags) {
+        return state.trySetFlag(FLAG_ANIMATION_ACTIVE, blockingFlags);
     }
 
     public static boolean isAllLedActive() {
-        return allLedActive;
+        return state.isSet(FLAG_ALL_LED_ACTIVE);
     }
 
     public static void setAllLedsActive(boolean status) {
-        allLedActive = status;
+        state.setFlag(FLAG_ALL_LED_ACTIVE, status);
     }
 
     public static boolean isCallLedActive() {
-        return callLedActive;
+        return state.isSet(FLAG_CALL_LED_ACTIVE);
     }
 
     public static void setCallLedActive(boolean status) {
-        callLedActive = status;
+        state.setFlag(FLAG_CALL_LED_ACTIVE, status);
     }
 
     public static boolean isEssentialLedActive() {
-        return essentialLedActive;
+        return state.isSet(FLAG_ESSENTIAL_LED_ACTIVE);
     }
 
     public static void setEssentialLedActive(boolean status) {
-        essentialLedActive = status;
+        state.setFlag(FLAG_ESSENTIAL_LED_ACTIVE, status);
     }
 
     public static int getChargingLedLast() {
-        return chargingLedLast;
+        return state.getField(CHARGING_LED_SHIFT);
     }
 
     public static void setChargingLedLast(int last) {
-        chargingLedLast = last;
+        setField(CHARGING_LED_SHIFT, last);
     }
 
     public static int getVolumeLedLast() {
-        return volumeLedLast;
+        return state.getField(VOLUME_LED_SHIFT);
     }
 
     public static void setVolumeLedLast(int last) {
-        volumeLedLast = last;
+        setField(VOLUME_LED_SHIFT, last);
     }
 
     public static boolean isCallLedEnabled() {
-        return callLedEnabled;
+        return state.isSet(FLAG_CALL_LED_ENABLED);
     }
 
     public static void setCallLedEnabled(boolean status) {
-        callLedEnabled = status;
+        state.setFlag(FLAG_CALL_LED_ENABLED, status);
     }
 
+    private static void setField(int shift, int value) {
+        if (value < 0 || value > StatusWord.FIELD_MASK) {
+            Log.w(TAG, "LED index out of range | value: " + value);
+            value = Math.max(0, Math.min(value, StatusWord.FIELD_MASK));
+        }
+        state.setField(shift, value);
+    }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Manager;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Flags and small counters packed into a single atomic word, so every reader
+ * sees a consistent snapshot and every transition is one compare and set.
+ * Listeners are called on the thread that made the change, after it has been
+ * published, and only when the word actually changed. Plain Java, so that
+ * the transitions can be exercised on a host.
+ */
+public final class StatusWord {
+
+    public interface Listener {
+        void onStatusChanged(int oldState, int newState);
+    }
+
+    // Width of a counter field
+    public static final int FIELD_MASK = 0xff;
+
+    private final AtomicInteger state = new AtomicInteger();
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public void addListener(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public int get() {
+        return state.get();
+    }
+
+    public boolean isSet(int flag) {
+        return (state.get() & flag) != 0;
+    }
+
+    public void setFlag(int flag, boolean status) {
+        int prev, next;
+        do {
+            prev = state.get();
+            next = status ? prev | flag : prev & ~flag;
+        } while (!state.compareAndSet(prev, next));
+        notifyListeners(prev, next);
+    }
+
+    /**
+     * Sets flag unless it or any of the blocking flags is already set.
+     * Returns whether it was set.
+     */
+    public boolean trySetFlag(int flag, int blockingFlags) {
+        int prev, next;
+        do {
+            prev = state.get();
+            if ((prev & (flag | blockingFlags)) != 0) return false;
+            next = prev | flag;
+        } while (!state.compareAndSet(prev, next));
+        notifyListeners(prev, next);
+        return true;
+    }
+
+    public int getField(int shift) {
+        return (state.get() >>> shift) & FIELD_MASK;
+    }
+
+    // The value must fit FIELD_MASK
+    public void setField(int shift, int value) {
+        int prev, next;
+        do {
+            prev = state.get();
+            next = (prev & ~(FIELD_MASK << shift)) | (value << shift);
+        } while (!state.compareAndSet(prev, next));
+        notifyListeners(prev, next);
+    }
+
+    private void notifyListeners(int prev, int next) {
+        if (prev == next) return;
+        for (Listener listener : listeners) {
+            listener.onStatusChanged(prev, next);
+        }
+    }
+}
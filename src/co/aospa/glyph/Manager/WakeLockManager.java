@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Manager;
+
+import android.content.Context;
+import android.os.PowerManager;
+import android.os.PowerManager.WakeLock;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.PrintWriter;
+
+import co.aospa.glyph.Constants.Constants;
+import co.aospa.glyph.Utils.AnimationInfo;
+import co.aospa.glyph.Utils.ResourceUtils;
+
+/**
+ * The one wakelock keeping the device awake while the glyphs animate. Every
+ * hold is counted and sized from the duration of what it plays, so the lock
+ * goes away as soon as the last animation is done and at the latest a margin
+ * after its scheduled end if a holder never releases. Animations still queued
+ * for the render thread keep it up to MAX_QUEUED_TIME. The time the lock was
+ * held is kept for dumpsys.
+ */
+public final class WakeLockManager {
+
+    private static final String TAG = "GlyphWakeLockManager";
+    private static final boolean DEBUG = true;
+
+    // Added to every hold to cover scheduling and the final frame write
+    private static final long MARGIN = 250;
+    // Used when the duration of an animation cannot be read
+    private static final long DEFAULT_DURATION = 2500;
+    // Longest an animation is held for while waiting on the render thread
+    private static final long MAX_QUEUED_TIME = 30000;
+
+    private static WakeLock wakeLock;
+    private static int holders;
+    // Holders whose animation did not start yet
+    private static int queued;
+    // Uptime at which the lock times out, only valid while heldSince >= 0
+    private static long deadline;
+    // Latest end of a started hold, and of the queued ones
+    private static long playDeadline;
+    private static long queueDeadline;
+    private static long heldSince = -1;
+    private static long heldTime;
+    private static long acquisitions;
+
+    /** Returns how long an animation plays in ms. */
+    public static long getAnimationDuration(String name) {
+        AnimationInfo info = ResourceUtils.getAnimationInfo(name);
+        return info != null ? info.getDuration() : DEFAULT_DURATION;
+    }
+
+    private static synchronized void acquireQueued(long timeout) {
+        holders++;
+        acquisitions++;
+        queued++;
+        long now = SystemClock.uptimeMillis();
+        long wait = timeout > 0 ? Math.min(timeout, MAX_QUEUED_TIME) : MAX_QUEUED_TIME;
+        queueDeadline = Math.max(queueDeadline, now + wait);
+        update(now);
+    }
+
+    private static synchronized void release() {
+        if (holders == 0) return;
+        if (--holders > 0) return;
+        long now = SystemClock.uptimeMillis();
+        expire(now);
+        if (heldSince < 0) return;
+        heldTime += now - heldSince;
+        heldSince = -1;
+        getWakeLock().release();
+    }
+
+    /**
+     * Holds the lock from now until playback on the render thread is done.
+     * While queued behind other work the hold lasts up to timeout, capped at
+     * MAX_QUEUED_TIME, once playback starts it is sized to the animation.
+     * Playback that did not start within timeout is dropped, see
+     * AnimationQueue.submit.
+     */
+    public static void post(long duration, int priority, long timeout, Runnable playback) {
+        acquireQueued(timeout);
+        AnimationQueue.submit(priority, timeout, () -> {
+            start(duration);
+            try {
+                playback.run();
+            } finally {
+                release();
+            }
+        }, WakeLockManager::drop);
+    }
+
+    public static synchronized long getHeldTime() {
+        long now = SystemClock.uptimeMillis();
+        expire(now);
+        return heldTime + (heldSince >= 0 ? now - heldSince : 0);
+    }
+
+    public static synchronized void dump(PrintWriter pw) {
+        pw.println("Wakelock: held=" + getHeldTime() + "ms acquisitions=" + acquisitions
+                + " holders=" + holders + " queued=" + queued);
+    }
+
+    private static synchronized void start(long duration) {
+        if (queued > 0) queued--;
+        extend(duration);
+    }
+
+    // Releases a queued hold whose playback expired before it started
+    private static synchronized void drop() {
+        if (queued > 0) queued--;
+        release();
+        if (holders > 0) update(SystemClock.uptimeMillis());
+    }
+
+    private static synchronized void extend(long duration) {
+        long now = SystemClock.uptimeMillis();
+        playDeadline = Math.max(playDeadline, now + duration + MARGIN);
+        update(now);
+    }
+
+    // Moves the timeout to the latest end of every hold, shortening it once nothing is queued
+    private static void update(long now) {
+        expire(now);
+        long end = queued > 0 ? Math.max(playDeadline, queueDeadline) : playDeadline;
+        if (end <= now || (heldSince >= 0 && end == deadline)) return;
+        if (heldSince < 0) heldSince = now;
+        deadline = end;
+        // Not reference counted, acquiring again moves the timeout
+        getWakeLock().acquire(end - now);
+        if (DEBUG) Log.d(TAG, "Holding wakelock | ms: " + (end - now) + " | holders: " + holders
+                + " | queued: " + queued);
+    }
+
+    // Accounts for a lock that timed out on its own
+    private static void expire(long now) {
+        if (heldSince < 0 || now < deadline) return;
+        heldTime += deadline - heldSince;
+        heldSince = -1;
+    }
+
+    private static WakeLock getWakeLock() {
+        if (wakeLock == null) {
+            PowerManager powerManager = (PowerManager) Constants.CONTEXT.getSystemService(Context.POWER_SERVICE);
+            wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, TAG);
+            wakeLock.setReferenceCounted(false);
+        }
+        return wakeLock;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Music;
+
+/**
+ * The analysis half of the music visualizer, turning an FFT capture into the
+ * energy of every band. There is either one band per zone, with onsets
+ * reported as beats, or for the spectrum one log spaced band per LED inside
+ * the frequency range of each zone. Captures must come from one thread.
+ */
+public final class MusicAnalyzer {
+
+    // Upper frequency of every zone in Hz
+    private static final int[] ZONE_FREQUENCIES = { 200, 500, 1500, 5000, 10000 };
+    // Lower edge of the lowest spectrum band in Hz
+    private static final int MIN_FREQUENCY = 40;
+
+    // Band fluxes the onset threshold is computed over, about two seconds of captures
+    private static final int ONSET_HISTORY = 20;
+    // Standard deviations above the mean flux that make an onset
+    private static final double ONSET_SENSITIVITY = 1.5;
+
+    private final boolean spectrum;
+    private final int[] bandFrequencies;
+    // Only used for beats per zone
+    private final OnsetDetector onsetDetector;
+    // Bin ranges of the bands for the current capture size and rate
+    private SpectrumBands bands;
+
+    public MusicAnalyzer(MusicLayout layout, boolean spectrum) {
+        this.spectrum = spectrum;
+        if (spectrum) {
+            bandFrequencies = new int[layout.getLeds().length];
+            int band = 0;
+            int low = MIN_FREQUENCY;
+            for (int zone = 0; zone < MusicLayout.ZONE_COUNT; zone++) {
+                int count = layout.getZoneLeds(zone).length;
+                SpectrumBands.logSpaced(low, ZONE_FREQUENCIES[zone], count, bandFrequencies, band);
+                band += count;
+                low = ZONE_FREQUENCIES[zone];
+            }
+            onsetDetector = null;
+        } else {
+            bandFrequencies = ZONE_FREQUENCIES;
+            onsetDetector = new OnsetDetector(MusicLayout.ZONE_COUNT, ONSET_HISTORY, ONSET_SENSITIVITY);
+        }
+    }
+
+    public boolean isSpectrum() {
+        return spectrum;
+    }
+
+    public int getBandCount() {
+        return bandFrequencies.length;
+    }
+
+    /** Forgets the history, e.g. when music starts again after a pause. */
+    public void reset() {
+        if (onsetDetector != null) onsetDetector.reset();
+    }
+
+    /**
+     * Writes the energy of every band into energies and returns a bitmask of
+     * the zones with a beat, always 0 for the spectrum.
+     *
+     * @param samplingRate sampling rate in mHz, as passed to onFftDataCapture
+     */
+    public int analyze(byte[] fft, int samplingRate, double[] energies) {
+        if (bands == null || !bands.matches(fft.length, samplingRate)) {
+            bands = new SpectrumBands(fft.length, samplingRate, bandFrequencies);
+        }
+        bands.compute(fft, energies);
+        return spectrum ? 0 : onsetDetector.process(energies);
+    }
+}
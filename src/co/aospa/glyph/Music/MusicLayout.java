@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Music;
+
+/**
+ * Where the music zones are inside the frames of a device. Zones go from low
+ * to high frequencies and the LEDs of a zone along its strip. Kept free of
+ * Android classes, like the rest of this package, so that the visualizer can
+ * be replayed on a host (see tools/).
+ */
+public final class MusicLayout {
+
+    public static final int ZONE_LOW = 0;
+    public static final int ZONE_MID_LOW = 1;
+    public static final int ZONE_MID = 2;
+    public static final int ZONE_MID_HIGH = 3;
+    public static final int ZONE_HIGH = 4;
+    public static final int ZONE_COUNT = 5;
+
+    // Phone (1) pattern
+    public static final MusicLayout PHONE1 = new MusicLayout(5, new int[][] {
+            {4},
+            {3},
+            {2},
+            {0},
+            {1},
+    });
+
+    // Phone (2) pattern
+    public static final MusicLayout PHONE2 = new MusicLayout(33, new int[][] {
+            {24},
+            {25, 26, 27, 28, 29, 30, 31, 32},
+            {3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23},
+            {0, 1},
+            {2},
+    });
+
+    private final int patternLength;
+    private final int[][] zoneLeds;
+    // LEDs of all zones one after the other
+    private final int[] leds;
+
+    private MusicLayout(int patternLength, int[][] zoneLeds) {
+        this.patternLength = patternLength;
+        this.zoneLeds = zoneLeds;
+        int count = 0;
+        for (int[] zone : zoneLeds) {
+            count += zone.length;
+        }
+        leds = new int[count];
+        int i = 0;
+        for (int[] zone : zoneLeds) {
+            System.arraycopy(zone, 0, leds, i, zone.length);
+            i += zone.length;
+        }
+    }
+
+    public int getPatternLength() {
+        return patternLength;
+    }
+
+    // Must not be modified
+    public int[] getZoneLeds(int zone) {
+        return zoneLeds[zone];
+    }
+
+    // LEDs of all zones from ZONE_LOW to ZONE_HIGH, must not be modified
+    public int[] getLeds() {
+        return leds;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Music;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands the newest visualizer analysis from the capture callback to the
+ * render loop without locking or allocating. Three frames rotate between the
+ * writer, the reader and the shared slot, so the writer never waits and an
+ * analysis the reader has not taken yet is simply replaced by the next one.
+ * There must be only one writer and one reader.
+ */
+public final class MusicMailbox {
+
+    public static final class Frame {
+        public final double[] energies;
+        // Bit i is set if a beat was detected in band i
+        public int beats;
+        private long sequence;
+
+        private Frame(int bands) {
+            energies = new double[bands];
+        }
+    }
+
+    private final AtomicReference<Frame> slot;
+    private final AtomicLong published = new AtomicLong();
+    private Frame back;
+    private Frame front;
+    private long sequence;
+
+    public MusicMailbox(int bands) {
+        slot = new AtomicReference<>(new Frame(bands));
+        back = new Frame(bands);
+        front = new Frame(bands);
+    }
+
+    /** The frame the writer fills before publishing it. */
+    public Frame getBack() {
+        return back;
+    }
+
+    public void publish() {
+        back.sequence = ++sequence;
+        back = slot.getAndSet(back);
+        published.set(sequence);
+    }
+
+    public boolean hasNew() {
+        return published.get() > front.sequence;
+    }
+
+    /** Returns the newest published frame, or null if it was already taken. */
+    public Frame take() {
+        if (!hasNew()) return null;
+        long last = front.sequence;
+        front = slot.getAndSet(front);
+        return front.sequence > last ? front : null;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package co.aospa.glyph.Music;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import co.aospa.glyph.Utils.FrameUtils;
+
+/**
+ * Turns the newest analysis into frames at a fixed rate, writing at most
+ * one frame per tick. It stops once the LEDs went dark and no analysis
+ * arrived for IDLE_TIMEOUT, and is started again by the next one. The
+ * caller owns the clock and the scheduling, so the same loop runs on the
+ * render thread of MusicVisualizerService and on the simulated clock of
+ * the replay harness. Times are in ms on any monotonic clock.
+ */
+public final class MusicRenderLoop {
+
+    public static final int FRAME_PERIOD = FrameUtils.DEFAULT_FRAME_PERIOD;
+    // How long the loop keeps running without a new analysis
+    public static final long IDLE_TIMEOUT = 1000;
+
+    public interface FrameListener {
+        void onFrame(long now, int[] frame);
+    }
+
+    private final MusicMailbox mailbox;
+    private final MusicRenderer renderer;
+    private final FrameListener listener;
+    private final AtomicBoolean running = new AtomicBoolean();
+    // Set for good by stop(), only touched on the loop's thread
+    private boolean stopped;
+    private long nextFrame;
+    private long lastAnalysis;
+
+    public MusicRenderLoop(MusicMailbox mailbox, MusicRenderer renderer, FrameListener listener) {
+        this.mailbox = mailbox;
+        this.renderer = renderer;
+        this.listener = listener;
+    }
+
+    /**
+     * Called by the writer after publishing an analysis. Returns true if the
+     * loop was stopped, the caller must then call start() on the loop's
+     * thread.
+     */
+    public boolean requestStart() {
+        return running.compareAndSet(false, true);
+    }
+
+    /**
+     * Returns the time of the first tick, or -1 if the loop was stopped in
+     * the meantime and must not run.
+     */
+    public long start(long now) {
+        if (stopped) {
+            running.set(false);
+            return -1;
+        }
+        nextFrame = lastAnalysis = now;
+        return nextFrame;
+    }
+
+    /** Runs the tick for now, returns the time of the next one or -1 once idle. */
+    public long tick(long now) {
+        MusicMailbox.Frame frame = mailbox.take();
+        if (frame != null) {
+            lastAnalysis = now;
+            renderer.update(now, frame.energies, frame.beats);
+        }
+        if (renderer.render(now)) {
+            listener.onFrame(now, renderer.getFrame());
+        }
+
+        if (renderer.isDark() && now - lastAnalysis >= IDLE_TIMEOUT) {
+            running.set(false);
+            // An analysis published after the check above would not restart the loop
+            if (!mailbox.hasNew() || !running.compareAndSet(false, true)) return -1;
+        }
+
+        // Fixed rate, a late frame does not push back the ones after it
+        nextFrame = Math.max(nextFrame + FRAME_PERIOD, now);
+        return nextFrame;
+    }
+
+    /**
+     * Stops the loop for good and writes a dark frame. A start requested by
+     * an analysis that raced with this is ignored.
+     */
+    public void stop(long now) {
+        stopped = true;
+        running.set(false);
+        renderer.clear();
+        listener.onFrame(now, renderer.getFrame());
+    }
+}
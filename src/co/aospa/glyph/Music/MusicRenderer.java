@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Music;
+
+import java.util.Arrays;
+
+/**
+ * The render half of the music visualizer, turning the newest analysis into
+ * a frame on every tick. A beat lights its whole zone for PULSE_DURATION,
+ * the spectrum follows every band through SpectrumRenderer. Times are in ms
+ * on any monotonic clock.
+ */
+public final class MusicRenderer {
+
+    // How long a zone stays lit after a beat
+    private static final long PULSE_DURATION = 85;
+    // Analysis older than this no longer drives the spectrum
+    private static final long STALE_TIMEOUT = 250;
+
+    private final MusicLayout layout;
+    private final int maxValue;
+    // Only used for the spectrum
+    private final SpectrumRenderer spectrumRenderer;
+    private final long[] litUntil = new long[MusicLayout.ZONE_COUNT];
+    private final int[] frame;
+    private long lastUpdate;
+    private int lastZones;
+
+    /**
+     * @param maxValue frame value of a lit zone or a band at full level
+     */
+    public MusicRenderer(MusicLayout layout, boolean spectrum, int maxValue) {
+        this.layout = layout;
+        this.maxValue = maxValue;
+        spectrumRenderer = spectrum
+                ? new SpectrumRenderer(layout.getLeds(), layout.getPatternLength(), maxValue)
+                : null;
+        frame = spectrum ? spectrumRenderer.getFrame() : new int[layout.getPatternLength()];
+    }
+
+    /** Takes a new analysis, see MusicAnalyzer.analyze. */
+    public void update(long now, double[] energies, int beats) {
+        lastUpdate = now;
+        if (spectrumRenderer != null) {
+            spectrumRenderer.update(energies);
+            return;
+        }
+        for (int zone = 0; zone < MusicLayout.ZONE_COUNT; zone++) {
+            if ((beats & (1 << zone)) != 0) litUntil[zone] = now + PULSE_DURATION;
+        }
+    }
+
+    /** Renders the frame for now, returns whether it changed. */
+    public boolean render(long now) {
+        if (spectrumRenderer != null) {
+            if (now - lastUpdate >= STALE_TIMEOUT) spectrumRenderer.silence();
+            return spectrumRenderer.render();
+        }
+
+        int zones = 0;
+        for (int zone = 0; zone < MusicLayout.ZONE_COUNT; zone++) {
+            if (now < litUntil[zone]) zones |= 1 << zone;
+        }
+        if (zones == lastZones) return false;
+        for (int zone = 0; zone < MusicLayout.ZONE_COUNT; zone++) {
+            int value = (zones & (1 << zone)) != 0 ? maxValue : 0;
+            for (int led : layout.getZoneLeds(zone)) {
+                frame[led] = value;
+            }
+        }
+        lastZones = zones;
+        return true;
+    }
+
+    // Written by render(), must not be modified
+    public int[] getFrame() {
+        return frame;
+    }
+
+    public boolean isDark() {
+        return spectrumRenderer != null ? spectrumRenderer.isDark() : lastZones == 0;
+    }
+
+    /** Turns everything off, the next frame starts from dark. */
+    public void clear() {
+        if (spectrumRenderer != null) {
+            spectrumRenderer.clear();
+            return;
+        }
+        Arrays.fill(litUntil, 0);
+        Arrays.fill(frame, 0);
+        lastZones = 0;
+    }
+}
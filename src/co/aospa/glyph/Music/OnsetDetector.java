@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Music;
+
+import java.util.Arrays;
+
+/**
+ * Spectral flux onset detector. The flux of a band is how much its energy
+ * rose since the previous frame, and a band has an onset when its flux
+ * exceeds the mean plus sensitivity times the standard deviation of its
+ * recent flux. The history is a ring of the last historySize fluxes per band
+ * with running sums, so a frame costs O(bands) whatever the history length.
+ */
+public final class OnsetDetector {
+
+    // Onsets are only reported once this share of the history is filled
+    private static final int MIN_HISTORY_DIVISOR = 2;
+
+    private final int bands;
+    private final int historySize;
+    private final double sensitivity;
+
+    // historySize fluxes per band, band after band
+    private final double[] history;
+    private final double[] sums;
+    private final double[] squareSums;
+    private final double[] previous;
+    private int index;
+    private int count;
+    private boolean primed;
+
+    public OnsetDetector(int bands, int historySize, double sensitivity) {
+        this.bands = bands;
+        this.historySize = historySize;
+        this.sensitivity = sensitivity;
+        history = new double[bands * historySize];
+        sums = new double[bands];
+        squareSums = new double[bands];
+        previous = new double[bands];
+    }
+
+    public void reset() {
+        Arrays.fill(history, 0);
+        Arrays.fill(sums, 0);
+        Arrays.fill(squareSums, 0);
+        index = 0;
+        count = 0;
+        primed = false;
+    }
+
+    /** Feeds the energies of the next frame, returns a bitmask of the bands with an onset. */
+    public int process(double[] energies) {
+        if (!primed) {
+            System.arraycopy(energies, 0, previous, 0, bands);
+            primed = true;
+            return 0;
+        }
+
+        boolean ready = count >= historySize / MIN_HISTORY_DIVISOR;
+        int onsets = 0;
+        for (int band = 0, slot = index; band < bands; band++, slot += historySize) {
+            double flux = Math.max(0, energies[band] - previous[band]);
+            previous[band] = energies[band];
+
+            if (ready && flux > 0) {
+                double mean = sums[band] / count;
+                double variance = Math.max(0, squareSums[band] / count - mean * mean);
+                if (flux > mean + sensitivity * Math.sqrt(variance)) onsets |= 1 << band;
+            }
+
+            double old = history[slot];
+            history[slot] = flux;
+            sums[band] += flux - old;
+            squareSums[band] += flux * flux - old * old;
+        }
+
+        if (count < historySize) count++;
+        if (++index == historySize) {
+            index = 0;
+            resum();
+        }
+        return onsets;
+    }
+
+    // Once per lap, so that rounding errors of the running sums do not pile up
+    private void resum() {
+        for (int band = 0, start = 0; band < bands; band++, start += historySize) {
+            double sum = 0;
+            double squareSum = 0;
+            for (int i = start; i < start + historySize; i++) {
+                sum += history[i];
+                squareSum += history[i] * history[i];
+            }
+            sums[band] = sum;
+            squareSums[band] = squareSum;
+        }
+    }
+}
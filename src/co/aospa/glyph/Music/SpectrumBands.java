@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Music;
+
+/**
+ * Bin ranges of the frequency bands used by the music visualizer, computed
+ * once per capture size and sampling rate. A Visualizer FFT capture of n bytes
+ * holds the DC component in byte 0, the real part of the Nyquist bin in byte 1
+ * and the real and imaginary parts of bins 1 to n / 2 - 1 as signed byte pairs.
+ * Only the latter are used, the first band starts at bin 1.
+ */
+public final class SpectrumBands {
+
+    // Truncated magnitude for every squared magnitude a pair of signed bytes can have
+    private static final short[] MAGNITUDES = new short[2 * 128 * 128 + 1];
+
+    static {
+        for (int i = 0; i < MAGNITUDES.length; i++) {
+            MAGNITUDES[i] = (short) Math.sqrt(i);
+        }
+    }
+
+    private final int captureSize;
+    private final int samplingRate;
+    // Exclusive end bin of every band, a band starts where the previous one ends.
+    // Every band gets at least one bin as long as there are bins left.
+    private final int[] ends;
+
+    /**
+     * @param captureSize  FFT capture size in bytes
+     * @param samplingRate sampling rate in mHz, as passed to onFftDataCapture
+     * @param frequencies  upper frequency of every band in Hz, ascending
+     */
+    public SpectrumBands(int captureSize, int samplingRate, int[] frequencies) {
+        this.captureSize = captureSize;
+        this.samplingRate = samplingRate;
+        this.ends = new int[frequencies.length];
+
+        double bins = captureSize / 2.0;
+        int nyquist = samplingRate / 2000;
+        int bin = 1;
+        for (int band = 0; band < frequencies.length; band++) {
+            int start = bin;
+            while (bin < captureSize / 2 && (bin == start || (bin * nyquist) / bins < frequencies[band])) {
+                bin++;
+            }
+            ends[band] = bin;
+        }
+    }
+
+    public boolean matches(int captureSize, int samplingRate) {
+        return this.captureSize == captureSize && this.samplingRate == samplingRate;
+    }
+
+    public int getBandCount() {
+        return ends.length;
+    }
+
+    public int getStartBin(int band) {
+        return band == 0 ? 1 : ends[band - 1];
+    }
+
+    public int getEndBin(int band) {
+        return ends[band];
+    }
+
+    /**
+     * Fills frequencies from offset with the upper frequencies of count bands
+     * spaced evenly on a log scale between low and high Hz.
+     */
+    public static void logSpaced(double low, double high, int count, int[] frequencies, int offset) {
+        double ratio = Math.pow(high / low, 1.0 / count);
+        double frequency = low;
+        for (int i = 0; i < count; i++) {
+            frequency *= ratio;
+            frequencies[offset + i] = (int) Math.round(frequency);
+        }
+        // Do not let rounding move the last band off the edge
+        frequencies[offset + count - 1] = (int) Math.round(high);
+    }
+
+    /**
+     * Writes the mean magnitude of the bins of every band of an FFT capture
+     * into energies. Bands left without bins get 0.
+     */
+    public void compute(byte[] fft, double[] energies) {
+        int bin = 1;
+        for (int band = 0; band < ends.length; band++) {
+            int start = bin;
+            int end = ends[band];
+            int sum = 0;
+            for (int i = bin * 2; bin < end; bin++, i += 2) {
+                int re = fft[i];
+                int im = fft[i + 1];
+                sum += MAGNITUDES[re * re + im * im];
+            }
+            energies[band] = end > start ? sum / (double) (end - start) : 0;
+        }
+    }
+}
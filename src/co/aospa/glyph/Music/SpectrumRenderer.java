@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Music;
+
+import java.util.Arrays;
+
+/**
+ * Turns band energies into a frame with one LED per band. Every LED follows
+ * its band through an attack/release envelope and holds its peaks for a few
+ * frames before letting them fall, so the glyphs move smoothly between the
+ * captures, which arrive far less often than frames are rendered. Levels are
+ * relative to a slowly falling ceiling set by the loudest band, so quiet and
+ * loud songs both use the whole brightness range.
+ */
+public final class SpectrumRenderer {
+
+    // Share of the distance to the target an envelope covers per frame
+    private static final float ATTACK = 0.6f;
+    private static final float RELEASE = 0.15f;
+    // Frames a peak is held before it falls, and how far it falls per frame
+    private static final int PEAK_HOLD = 12;
+    private static final float PEAK_DECAY = 0.04f;
+    // Per analysis decay of the ceiling, and the ceiling used for silence
+    private static final double CEILING_DECAY = 0.995;
+    private static final double MIN_CEILING = 4;
+    // Envelopes below this level snap to dark once their band went silent
+    private static final float DARK = 1f / 256;
+
+    private final int[] bandLeds;
+    private final int maxValue;
+    private final int[] frame;
+    private final float[] targets;
+    private final float[] envelopes;
+    private final float[] peaks;
+    private final int[] peakAges;
+    private double ceiling = MIN_CEILING;
+    private boolean dark = true;
+
+    /**
+     * @param bandLeds      LED of every band inside the frame
+     * @param patternLength length of the rendered frames
+     * @param maxValue      frame value of a band at full level
+     */
+    public SpectrumRenderer(int[] bandLeds, int patternLength, int maxValue) {
+        this.bandLeds = bandLeds;
+        this.maxValue = maxValue;
+        frame = new int[patternLength];
+        targets = new float[bandLeds.length];
+        envelopes = new float[bandLeds.length];
+        peaks = new float[bandLeds.length];
+        peakAges = new int[bandLeds.length];
+    }
+
+    /** Sets the levels the envelopes move towards from a new analysis. */
+    public void update(double[] energies) {
+        double loudest = 0;
+        for (int band = 0; band < bandLeds.length; band++) {
+            loudest = Math.max(loudest, energies[band]);
+        }
+        ceiling = Math.max(Math.max(ceiling * CEILING_DECAY, loudest), MIN_CEILING);
+        for (int band = 0; band < bandLeds.length; band++) {
+            targets[band] = (float) Math.min(1, energies[band] / ceiling);
+        }
+    }
+
+    /** Lets every band fall to dark, e.g. when the analysis stopped. */
+    public void silence() {
+        Arrays.fill(targets, 0);
+    }
+
+    /** Turns every LED off at once and forgets the ceiling. */
+    public void clear() {
+        Arrays.fill(targets, 0);
+        Arrays.fill(envelopes, 0);
+        Arrays.fill(peaks, 0);
+        Arrays.fill(peakAges, 0);
+        Arrays.fill(frame, 0);
+        ceiling = MIN_CEILING;
+        dark = true;
+    }
+
+    /** Advances the envelopes by one frame, returns whether the frame changed. */
+    public boolean render() {
+        boolean changed = false;
+        boolean lit = false;
+        for (int band = 0; band < bandLeds.length; band++) {
+            float target = targets[band];
+            float envelope = envelopes[band];
+            envelope += (target - envelope) * (target > envelope ? ATTACK : RELEASE);
+            if (target == 0 && envelope < DARK) envelope = 0;
+            envelopes[band] = envelope;
+
+            float peak = peaks[band];
+            if (envelope >= peak) {
+                peak = envelope;
+                peakAges[band] = 0;
+            } else if (peakAges[band] < PEAK_HOLD) {
+                peakAges[band]++;
+            } else {
+                peak = Math.max(envelope, peak - PEAK_DECAY);
+            }
+            peaks[band] = peak;
+
+            int value = Math.round(peak * maxValue);
+            if (value != 0) lit = true;
+            int led = bandLeds[band];
+            if (frame[led] != value) {
+                frame[led] = value;
+                changed = true;
+            }
+        }
+        dark = !lit;
+        return changed;
+    }
+
+    // Written by render(), must not be modified
+    public int[] getFrame() {
+        return frame;
+    }
+
+    public boolean isDark() {
+        return dark;
+    }
+}
@@ -30,11 +30,10 @@ import android.widget.FrameLayout;
 import androidx.preference.Preference;
 import androidx.preference.PreferenceViewHolder;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-
 import co.aospa.glyph.R;
 import co.aospa.glyph.Constants.Constants;
+import co.aospa.glyph.Utils.FrameClock;
+import co.aospa.glyph.Utils.GlyphFrames;
 import co.aospa.glyph.Utils.ResourceUtils;
 
 public class GlyphAnimationPreference extends Preference {
@@ -159,52 +158,49 @@ public class GlyphAnimationPreference extends Preference {
             while (!animationTerminated) {
                 while (animationPaused) {}
                 if (DEBUG) Log.d(TAG, "Displaying animation | name: " + animationName);
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(
-                        ResourceUtils.getAnimation(animationName)))) {
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        line = line.replace(" ", "");
-                        line = line.endsWith(",") ? line.substring(0, line.length() - 1) : line;
-                        String[] split = line.split(",");
+                try {
+                    GlyphFrames frames = ResourceUtils.getAnimationFrames(animationName);
+                    FrameClock clock = new FrameClock(frames.getFramePeriod(), true);
+                    for (int f = 0; f < frames.getFrameCount(); f = clock.awaitNextFrame()) {
+                        int[] split = frames.getFrame(f);
                         if (Constants.getDevice().equals("phone1") && split.length == 5) { // Phone (1) pattern on Phone (1)
                             mActivity.runOnUiThread(() -> {
                                 for (int i = 0; i < animationSlugs.length; i++) {
-                                    setGlyphsDrawable(animationImgs[i], Integer.parseInt(split[i]));
+                                    setGlyphsDrawable(animationImgs[i], split[i]);
                                 }
                             });
                         } else if (Constants.getDevice().equals("phone2") && split.length == 5) { // Phone (1) pattern on Phone (2)
                             mActivity.runOnUiThread(() -> {
-                                    setGlyphsDrawable(animationImgs[0], Integer.parseInt(split[0]));
-                                    setGlyphsDrawable(animationImgs[1], Integer.parseInt(split[0]));
-                                    setGlyphsDrawable(animationImgs[2], Integer.parseInt(split[1]));
-                                    setGlyphsDrawable(animationImgs[3], Integer.parseInt(split[2]));
-                                    setGlyphsDrawable(animationImgs[4], Integer.parseInt(split[2]));
-                                    setGlyphsDrawable(animationImgs[5], Integer.parseInt(split[2]));
-                                    setGlyphsDrawable(animationImgs[6], Integer.parseInt(split[2]));
-                                    setGlyphsDrawable(animationImgs[7], Integer.parseInt(split[2]));
-                                    setGlyphsDrawable(animationImgs[8], Integer.parseInt(split[2]));
-                                    setGlyphsDrawable(animationImgs[9], Integer.parseInt(split[3]));
-                                    setGlyphsDrawable(animationImgs[10], Integer.parseInt(split[4]));
+                                    setGlyphsDrawable(animationImgs[0], split[0]);
+                                    setGlyphsDrawable(animationImgs[1], split[0]);
+                                    setGlyphsDrawable(animationImgs[2], split[1]);
+                                    setGlyphsDrawable(animationImgs[3], split[2]);
+                                    setGlyphsDrawable(animationImgs[4], split[2]);
+                                    setGlyphsDrawable(animationImgs[5], split[2]);
+                                    setGlyphsDrawable(animationImgs[6], split[2]);
+                                    setGlyphsDrawable(animationImgs[7], split[2]);
+                                    setGlyphsDrawable(animationImgs[8], split[2]);
+                                    setGlyphsDrawable(animationImgs[9], split[3]);
+                                    setGlyphsDrawable(animationImgs[10], split[4]);
                             });
                         } else if (Constants.getDevice().equals("phone2") && split.length == 33) { // Phone (2) pattern on Phone (2)
                             mActivity.runOnUiThread(() -> {
-                                    setGlyphsDrawable(animationImgs[0], Integer.parseInt(split[0]));
-                                    setGlyphsDrawable(animationImgs[1], Integer.parseInt(split[1]));
-                                    setGlyphsDrawable(animationImgs[2], Integer.parseInt(split[2]));
-                                    setGlyphsDrawable(animationImgs[3], Integer.parseInt(split[3]));
-                                    setGlyphsDrawable(animationImgs[4], Integer.parseInt(split[19]));
-                                    setGlyphsDrawable(animationImgs[5], Integer.parseInt(split[20]));
-                                    setGlyphsDrawable(animationImgs[6], Integer.parseInt(split[21]));
-                                    setGlyphsDrawable(animationImgs[7], Integer.parseInt(split[22]));
-                                    setGlyphsDrawable(animationImgs[8], Integer.parseInt(split[23]));
-                                    setGlyphsDrawable(animationImgs[9], Integer.parseInt(split[25]));
-                                    setGlyphsDrawable(animationImgs[10], Integer.parseInt(split[24]));
+                                    setGlyphsDrawable(animationImgs[0], split[0]);
+                                    setGlyphsDrawable(animationImgs[1], split[1]);
+                                    setGlyphsDrawable(animationImgs[2], split[2]);
+                                    setGlyphsDrawable(animationImgs[3], split[3]);
+                                    setGlyphsDrawable(animationImgs[4], split[19]);
+                                    setGlyphsDrawable(animationImgs[5], split[20]);
+                                    setGlyphsDrawable(animationImgs[6], split[21]);
+                                    setGlyphsDrawable(animationImgs[7], split[22]);
+                                    setGlyphsDrawable(animationImgs[8], split[23]);
+                                    setGlyphsDrawable(animationImgs[9], split[25]);
+                                    setGlyphsDrawable(animationImgs[10], split[24]);
                             });
                         } else {
-                            if (DEBUG) Log.d(TAG, "Animation line length mismatch | name: " + animationName + " | line: " + line);
+                            if (DEBUG) Log.d(TAG, "Animation length mismatch | name: " + animationName + " | leds: " + split.length);
                             updateAnimation(false);
                         }
-                        Thread.sleep(17);
                     }
                     Thread.sleep(animationTimeBetween);
                 } catch (Exception e) {
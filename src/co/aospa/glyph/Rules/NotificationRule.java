@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Rules;
+
+import java.util.Locale;
+
+/**
+ * A single notification rule. The match fields are optional, null or
+ * IMPORTANCE_ANY match everything. The outcome decides whether the
+ * notification plays an animation, which one and with what priority, and
+ * whether it keeps the essential LED on.
+ */
+public final class NotificationRule {
+
+    public static final int IMPORTANCE_ANY = Integer.MIN_VALUE;
+
+    private final String packageName;
+    private final String channelId;
+    private final String category;
+    private final int minImportance;
+    private final String titleKeyword;
+
+    private final boolean play;
+    private final boolean essential;
+    private final String animation;
+    private final int priority;
+
+    public NotificationRule(String packageName, String channelId, String category,
+            int minImportance, String titleKeyword,
+            boolean play, boolean essential, String animation, int priority) {
+        this.packageName = packageName;
+        this.channelId = channelId;
+        this.category = category;
+        this.minImportance = minImportance;
+        this.titleKeyword = titleKeyword == null ? null : titleKeyword.toLowerCase(Locale.ROOT);
+        this.play = play;
+        this.essential = essential;
+        this.animation = animation;
+        this.priority = priority;
+    }
+
+    // Matches a package, or one of its channels, and turns everything off
+    public static NotificationRule ignore(String packageName, String channelId) {
+        return new NotificationRule(packageName, channelId, null, IMPORTANCE_ANY, null,
+                false, false, null, 0);
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public String getChannelId() {
+        return channelId;
+    }
+
+    public boolean hasTitleKeyword() {
+        return titleKeyword != null;
+    }
+
+    public boolean shouldPlay() {
+        return play;
+    }
+
+    public boolean isEssential() {
+        return essential;
+    }
+
+    public String getAnimation() {
+        return animation;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    // Number of conditions beyond package and channel, more specific rules win
+    int getSpecificity() {
+        return (category != null ? 1 : 0)
+                + (minImportance != IMPORTANCE_ANY ? 1 : 0)
+                + (titleKeyword != null ? 1 : 0);
+    }
+
+    // Package and channel are already matched through the table
+    boolean matches(String category, int importance, String lowerCaseTitle) {
+        if (this.category != null && !this.category.equals(category)) return false;
+        if (minImportance != IMPORTANCE_ANY && importance < minImportance) return false;
+        if (titleKeyword != null
+                && (lowerCaseTitle == null || !lowerCaseTitle.contains(titleKeyword))) return false;
+        return true;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Rules;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Notification rules compiled into a hashed decision table. Rules are
+ * bucketed by package and channel, so a notification only looks at the
+ * rules for its own package and channel plus the global ones, however many
+ * rules there are. Channel rules win over package rules, which win over
+ * global rules. Inside a bucket more specific rules come first, then rules
+ * in the order they were given.
+ */
+public final class NotificationRules {
+
+    private static final NotificationRule[] EMPTY = new NotificationRule[0];
+
+    private static final Comparator<NotificationRule> SPECIFICITY =
+            (a, b) -> Integer.compare(b.getSpecificity(), a.getSpecificity());
+
+    private final HashMap<String, HashMap<String, NotificationRule[]>> channelRules = new HashMap<>();
+    private final HashMap<String, NotificationRule[]> packageRules = new HashMap<>();
+    private final NotificationRule[] globalRules;
+    private final NotificationRule defaultRule;
+    private final boolean needsTitle;
+
+    public NotificationRules(List<NotificationRule> rules, NotificationRule defaultRule) {
+        HashMap<String, HashMap<String, List<NotificationRule>>> channels = new HashMap<>();
+        HashMap<String, List<NotificationRule>> packages = new HashMap<>();
+        List<NotificationRule> global = new ArrayList<>();
+        boolean title = false;
+
+        for (NotificationRule rule : rules) {
+            title |= rule.hasTitleKeyword();
+            if (rule.getPackageName() == null) {
+                global.add(rule);
+            } else if (rule.getChannelId() == null) {
+                packages.computeIfAbsent(rule.getPackageName(), k -> new ArrayList<>()).add(rule);
+            } else {
+                channels.computeIfAbsent(rule.getPackageName(), k -> new HashMap<>())
+                        .computeIfAbsent(rule.getChannelId(), k -> new ArrayList<>()).add(rule);
+            }
+        }
+
+        for (Map.Entry<String, HashMap<String, List<NotificationRule>>> entry : channels.entrySet()) {
+            HashMap<String, NotificationRule[]> compiled = new HashMap<>();
+            for (Map.Entry<String, List<NotificationRule>> channel : entry.getValue().entrySet()) {
+                compiled.put(channel.getKey(), compile(channel.getValue()));
+            }
+            channelRules.put(entry.getKey(), compiled);
+        }
+        for (Map.Entry<String, List<NotificationRule>> entry : packages.entrySet()) {
+            packageRules.put(entry.getKey(), compile(entry.getValue()));
+        }
+        globalRules = compile(global);
+        this.defaultRule = defaultRule;
+        needsTitle = title;
+    }
+
+    // Lets callers skip extracting the title when no rule looks at it
+    public boolean needsTitle() {
+        return needsTitle;
+    }
+
+    public NotificationRule evaluate(String packageName, String channelId, String category,
+            int importance, CharSequence title) {
+        String lowerCaseTitle = needsTitle && title != null
+                ? title.toString().toLowerCase(Locale.ROOT) : null;
+
+        HashMap<String, NotificationRule[]> channels = channelRules.get(packageName);
+        if (channels != null) {
+            NotificationRule rule = match(channels.get(channelId), category, importance, lowerCaseTitle);
+            if (rule != null) return rule;
+        }
+        NotificationRule rule = match(packageRules.get(packageName), category, importance, lowerCaseTitle);
+        if (rule != null) return rule;
+        rule = match(globalRules, category, importance, lowerCaseTitle);
+        return rule != null ? rule : defaultRule;
+    }
+
+    private static NotificationRule match(NotificationRule[] rules, String category,
+            int importance, String lowerCaseTitle) {
+        if (rules == null) return null;
+        for (NotificationRule rule : rules) {
+            if (rule.matches(category, importance, lowerCaseTitle)) return rule;
+        }
+        return null;
+    }
+
+    private static NotificationRule[] compile(List<NotificationRule> rules) {
+        if (rules.isEmpty()) return EMPTY;
+        NotificationRule[] compiled = rules.toArray(EMPTY);
+        // Stable, rules of equal specificity keep their order
+        Arrays.sort(compiled, SPECIFICITY);
+        return compiled;
+    }
+}
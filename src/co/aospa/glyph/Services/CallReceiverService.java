@@ -23,25 +23,21 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.media.AudioManager;
 import android.os.IBinder;
-import android.os.Handler;
-import android.os.HandlerThread;
-import android.os.Looper;
 import android.telephony.TelephonyManager;
 import android.util.Log;
 
 import java.util.concurrent.Executors;
 
 import co.aospa.glyph.Manager.AnimationManager;
+import co.aospa.glyph.Manager.AnimationQueue;
 import co.aospa.glyph.Manager.SettingsManager;
+import co.aospa.glyph.Manager.StatusManager;
 
 public class CallReceiverService extends Service {
 
     private static final String TAG = "GlyphCallReceiverService";
     private static final boolean DEBUG = true;
 
-    private HandlerThread thread;
-    private Handler mThreadHandler;
-
     private AudioManager mAudioManager;
     
     private Runnable playCall;
@@ -50,14 +46,8 @@ public class CallReceiverService extends Service {
     public void onCreate() {
         if (DEBUG) Log.d(TAG, "Creating service");
 
-        // Add a handler thread
-        thread = new HandlerThread("CallReceiverService");
-        thread.start();
-        Looper looper = thread.getLooper();
-        mThreadHandler = new Handler(looper);
-
         mAudioManager = getSystemService(AudioManager.class);
-        mAudioManager.addOnModeChangedListener(cmd -> mThreadHandler.post(cmd), mAudioManagerOnModeChangedListener);
+        mAudioManager.addOnModeChangedListener(getMainExecutor(), mAudioManagerOnModeChangedListener);
         mAudioManagerOnModeChangedListener.onModeChanged(mAudioManager.getMode());
 
         IntentFilter callReceiver = new IntentFilter();
@@ -84,7 +74,6 @@ public class CallReceiverService extends Service {
         this.unregisterReceiver(mCallReceiver);
         mAudioManager.removeOnModeChangedListener(mAudioManagerOnModeChangedListener);
         disableCallAnimation();
-        thread.quit();
         super.onDestroy();
     }
 
@@ -95,13 +84,14 @@ public class CallReceiverService extends Service {
 
     private void enableCallAnimation() {
         if (DEBUG) Log.d(TAG, "enableCallAnimation");
-        mThreadHandler.post(playCall);
+        // Cut the current animation short and play ahead of queued ones
+        StatusManager.setCallLedEnabled(true);
+        AnimationQueue.submit(AnimationQueue.PRIORITY_CALL, playCall);
     }
 
     private void disableCallAnimation() {
         if (DEBUG) Log.d(TAG, "disableCallAnimation");
-        if (mThreadHandler.hasCallbacks(playCall))
-            mThreadHandler.removeCallbacks(playCall);
+        AnimationQueue.remove(playCall);
         AnimationManager.stopCall();
     }
 
@@ -30,19 +30,18 @@ import android.hardware.SensorManager;
 import android.os.BatteryManager;
 import android.os.IBinder;
 import android.os.Handler;
-import android.os.HandlerThread;
-import android.os.Looper;
 import android.os.PowerManager;
 import android.util.Log;
 
 import co.aospa.glyph.Manager.AnimationManager;
+import co.aospa.glyph.Manager.AnimationQueue;
+import co.aospa.glyph.Manager.RenderThread;
 
 public class ChargingService extends Service {
 
     private static final String TAG = "GlyphChargingService";
     private static final boolean DEBUG = true;
 
-    private HandlerThread thread;
     private Handler mThreadHandler;
 
     private BatteryManager mBatteryManager;
@@ -59,12 +58,8 @@ public class ChargingService extends Service {
     @Override
     public void onCreate() {
         if (DEBUG) Log.d(TAG, "Creating service");
-        
-        // Add a handler thread
-        thread = new HandlerThread("ChargingService");
-        thread.start();
-        Looper looper = thread.getLooper();
-        mThreadHandler = new Handler(looper);
+
+        mThreadHandler = RenderThread.getHandler();
 
         mBatteryManager = (BatteryManager) getSystemService(Context.BATTERY_SERVICE);
         mSensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
@@ -96,7 +91,7 @@ public class ChargingService extends Service {
         if (DEBUG) Log.d(TAG, "Destroying service");
         this.unregisterReceiver(mPowerMonitor);
         onPowerDisconnected();
-        thread.quit();
+        mThreadHandler.removeCallbacks(dismissCharging);
         super.onDestroy();
     }
 
@@ -112,7 +107,7 @@ public class ChargingService extends Service {
     private void onPowerConnected() {
         if (DEBUG) Log.d(TAG, "Power connected");
         if (DEBUG) Log.d(TAG, "Battery level: " + getBatteryLevel());
-        playChargingAnimation(true);
+        playChargingAnimation();
         mSensorManager.registerListener(mSensorEventListener,
             mAccelerometerSensor, SensorManager.SENSOR_DELAY_NORMAL);
     }
@@ -122,11 +117,11 @@ public class ChargingService extends Service {
 	      mSensorManager.unregisterListener(mSensorEventListener);
     }
 
-    private void playChargingAnimation(boolean wait) {
+    private void playChargingAnimation() {
         if (mThreadHandler.hasCallbacks(dismissCharging))
             mThreadHandler.removeCallbacks(dismissCharging);
-        mThreadHandler.post(() -> {
-            AnimationManager.playCharging(getBatteryLevel(), wait);
+        AnimationQueue.submit(AnimationQueue.PRIORITY_LEVEL, () -> {
+            AnimationManager.playCharging(getBatteryLevel());
         });
         mThreadHandler.postDelayed(dismissCharging, 1250);
     }
@@ -151,7 +146,7 @@ public class ChargingService extends Service {
 		        float acceleration = (float) Math.sqrt(x * x + y * y + z * z);
 
 		        if (acceleration > ACCELEROMETER_THRESHOLD && z <= ZFACEDOWN_THRESHOLD && !mPowerManager.isInteractive() ) {
-			          playChargingAnimation(false);
+			          playChargingAnimation();
 		        }
 	      }
 
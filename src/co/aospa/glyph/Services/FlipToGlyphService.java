@@ -23,14 +23,11 @@ import android.content.Context;
 import android.content.Intent;
 import android.media.AudioManager;
 import android.os.IBinder;
-import android.os.Handler;
-import android.os.HandlerThread;
-import android.os.Looper;
-import android.os.PowerManager;
-import android.os.PowerManager.WakeLock;
 import android.util.Log;
 
 import co.aospa.glyph.Manager.AnimationManager;
+import co.aospa.glyph.Manager.AnimationQueue;
+import co.aospa.glyph.Manager.WakeLockManager;
 import co.aospa.glyph.Sensors.FlipToGlyphSensor;
 
 public class FlipToGlyphService extends Service {
@@ -41,30 +38,16 @@ public class FlipToGlyphService extends Service {
     private boolean isFlipped;
     private int ringerMode;
 
-    private HandlerThread thread;
-    private Handler mThreadHandler;
-
     private AudioManager mAudioManager;
     private FlipToGlyphSensor mFlipToGlyphSensor;
-    private PowerManager mPowerManager;
-    private WakeLock mWakeLock;
 
     @Override
     public void onCreate() {
         if (DEBUG) Log.d(TAG, "Creating service");
-        
-        // Add a handler thread
-        thread = new HandlerThread("FlipToGlyphService");
-        thread.start();
-        Looper looper = thread.getLooper();
-        mThreadHandler = new Handler(looper);
 
         mFlipToGlyphSensor = new FlipToGlyphSensor(this, this::onFlip);
 
         mAudioManager = (AudioManager) getSystemService(Context.AUDIO_SERVICE);
-
-        mPowerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
-        mWakeLock = mPowerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, TAG);
     }
 
     @Override
@@ -78,7 +61,6 @@ public class FlipToGlyphService extends Service {
     public void onDestroy() {
         if (DEBUG) Log.d(TAG, "Destroying service");
         mFlipToGlyphSensor.disable();
-        thread.quit();
         super.onDestroy();
     }
 
@@ -91,8 +73,8 @@ public class FlipToGlyphService extends Service {
         if (flipped == isFlipped) return;
         if (DEBUG) Log.d(TAG, "Flipped: " + flipped);
         if (flipped) {
-            mWakeLock.acquire(2500);
-            mThreadHandler.post(() -> {
+            WakeLockManager.post(WakeLockManager.getAnimationDuration("flip"),
+                    AnimationQueue.PRIORITY_NOTIFICATION, AnimationQueue.NOTIFICATION_TIMEOUT, () -> {
                 AnimationManager.playCsv("flip");
             });
             ringerMode = mAudioManager.getRingerModeInternal();
@@ -25,9 +25,17 @@ import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.IBinder;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
+import co.aospa.glyph.Constants.DeviceProfile;
 import co.aospa.glyph.Manager.AnimationManager;
+import co.aospa.glyph.Manager.RenderThread;
+import co.aospa.glyph.Music.MusicAnalyzer;
+import co.aospa.glyph.Music.MusicMailbox;
+import co.aospa.glyph.Music.MusicRenderLoop;
+import co.aospa.glyph.Music.MusicRenderer;
+import co.aospa.glyph.Utils.BrightnessTable;
 
 public class MusicVisualizerService extends Service {
 
@@ -41,17 +49,11 @@ public class MusicVisualizerService extends Service {
     private int bufferSize;
     private boolean isRecording = false;
 
-    private double mRunningSoundAvg[];             // Total sound energy in one second  (0=low, 1=mid low, 2=mid, 3=mid high, 4=high)
-    private double mCurrentAvgEnergyOneSec[];      // Average sound energy in one second (0=low, 1=mid low, 2=mid, 3=mid high, 4=high)
-    private int mNumberOfSamplesInOneSec;          // Number of samples in one second
-    private long mSystemTimeStartSec;              // System time at the start of a one second interval
-
-    // Define the max value for a frequency band
-    private static final int LOW_FREQUENCY = 200;
-    private static final int MID_LOW_FREQUENCY = 500;
-    private static final int MID_FREQUENCY = 1500;
-    private static final int MID_HIGH_FREQUENCY = 5000;
-    private static final int HIGH_FREQUENCY = 10000;
+    private MusicAnalyzer mAnalyzer;               // Used on the capture callback
+    private MusicRenderer mRenderer;               // Used on the render thread
+    private MusicMailbox mMailbox;
+    private MusicRenderLoop mRenderLoop;
+    private boolean mMusicActive;
 
     @Override
     public void onCreate() {
@@ -63,6 +65,15 @@ public class MusicVisualizerService extends Service {
         Looper looper = thread.getLooper();
         mHandler = new Handler(looper);
 
+        // One band per LED instead of beats per zone where frames can address every LED
+        DeviceProfile profile = DeviceProfile.get();
+        boolean spectrum = profile.hasPhone2Pattern();
+        mAnalyzer = new MusicAnalyzer(profile.getMusicLayout(), spectrum);
+        mRenderer = new MusicRenderer(profile.getMusicLayout(), spectrum, BrightnessTable.MAX_ASSET_VALUE);
+        mMailbox = new MusicMailbox(mAnalyzer.getBandCount());
+        mRenderLoop = new MusicRenderLoop(mMailbox, mRenderer,
+                (now, frame) -> AnimationManager.updateMusicFrame(frame));
+
         // Get audio service
         mAudioManager = (AudioManager) getSystemService(Context.AUDIO_SERVICE);
 
@@ -84,8 +95,15 @@ public class MusicVisualizerService extends Service {
                     @Override
                     public void onFftDataCapture(Visualizer visualizer, byte[] fft, int samplingRate) {
                         if (mAudioManager.isMusicActive()) {
-                            if (DEBUG) Log.d(TAG, "Music is active");
+                            if (!mMusicActive) {
+                                if (DEBUG) Log.d(TAG, "Music is active");
+                                // The history from before the pause says nothing about this song
+                                mAnalyzer.reset();
+                                mMusicActive = true;
+                            }
                             processAudioFFT(fft, samplingRate);
+                        } else {
+                            mMusicActive = false;
                         }
                     }
                 }, Visualizer.getMaxCaptureRate() / 2, false, true
@@ -93,18 +111,6 @@ public class MusicVisualizerService extends Service {
 
             // Enable visualizer
             mVisualizer.setEnabled(true);
-
-            // Initialize instance variables
-            mRunningSoundAvg = new double[5];
-            mCurrentAvgEnergyOneSec = new double[5];
-            mCurrentAvgEnergyOneSec[0] = -1;
-            mCurrentAvgEnergyOneSec[1] = -1;
-            mCurrentAvgEnergyOneSec[2] = -1;
-            mCurrentAvgEnergyOneSec[3] = -1;
-            mCurrentAvgEnergyOneSec[4] = -1;
-
-            // Set the start time for the current one second interval
-            mSystemTimeStartSec = System.currentTimeMillis();      
         });
     }
 
@@ -120,6 +126,10 @@ public class MusicVisualizerService extends Service {
         mVisualizer.setEnabled(false);
         mVisualizer.release();
         thread.quit();
+        RenderThread.post(() -> {
+            RenderThread.getHandler().removeCallbacks(mRenderRunnable);
+            mRenderLoop.stop(SystemClock.uptimeMillis());
+        });
         super.onDestroy();
     }
 
@@ -128,170 +138,25 @@ public class MusicVisualizerService extends Service {
         return null;
     }
 
+    // Runs on the capture callback, must never block
     private void processAudioFFT(byte[] audioBytes, int samplingRate) {
-        // The first byte is the DC component of the FFT result (real only)
-        int energySum = Math.abs(audioBytes[0]);
-
-        // Calculate the average instantaneous energy of the low frequency band
-        int k = 2;
-        double captureSize = mVisualizer.getCaptureSize() / 2.0;
-        int sampleRate = samplingRate / 2000;
-        double nextFrequency = (k / 2.0 * sampleRate) / captureSize;
-
-        // Sleeping period to light up leds
-        int sleep = 119;
-
-        try {
-            // Sum the energy in the low frequency band
-            while (nextFrequency < LOW_FREQUENCY) {
-                // Calculate the energy of the current frequency
-                energySum += Math.sqrt(audioBytes[k] * audioBytes[k] + audioBytes[k + 1] * audioBytes[k + 1]);
-
-                // Increment the frequency index
-                k += 2;
-                nextFrequency = (k / 2.0 * sampleRate) / captureSize;
-            }
-
-            // Calculate the average energy in the low frequency band
-            double sampleAvgAudioEnergy = energySum / (k / 2.0);
-
-            // Accumulate the low frequency band energy over time
-            mRunningSoundAvg[0] += sampleAvgAudioEnergy;
-
-            // Check for a beat in the low frequency band
-            // A beat occurs when the average sound energy of a sample is greater than
-            // the average sound energy of a one second part of a song
-            // Also make sure the mCurrentAvgEnergy has been set, otherwise its -1 before its first pass
-            if ((sampleAvgAudioEnergy > mCurrentAvgEnergyOneSec[0]) && (mCurrentAvgEnergyOneSec[0] > 0)) {
-                if (DEBUG) Log.d(TAG, "Low frequency band beat detected");
-                AnimationManager.playMusic("low");
-                Thread.sleep(sleep);
-            }
-
-            energySum = 0;
-
-            // Sum the energy in the mid-low frequency band
-            while (nextFrequency < MID_LOW_FREQUENCY) {
-                // Calculate the energy of the current frequency
-                energySum += Math.sqrt(audioBytes[k] * audioBytes[k] + audioBytes[k + 1] * audioBytes[k + 1]);
-
-                // Increment the frequency index
-                k += 2;
-                nextFrequency = (k / 2.0 * sampleRate) / captureSize;
-            }
-
-            // Calculate the average energy in the mid-low frequency band
-            sampleAvgAudioEnergy = energySum / (k / 2.0);
-
-            // Accumulate the mid low frequency band energy over time
-            mRunningSoundAvg[1] += sampleAvgAudioEnergy;
-
-            // Check for a beat in the mid-low frequency band
-            if ((sampleAvgAudioEnergy > mCurrentAvgEnergyOneSec[1]) && (mCurrentAvgEnergyOneSec[1] > 0)) {
-                if (DEBUG) Log.d(TAG, "Mid-low frequency band beat detected");
-                AnimationManager.playMusic("mid_low");
-                Thread.sleep(sleep);
-            }
-
-            energySum = 0;
-
-            // Sum the energy in the mid frequency band
-            while (nextFrequency < MID_FREQUENCY) {
-                // Calculate the energy of the current frequency
-                energySum += Math.sqrt(audioBytes[k] * audioBytes[k] + audioBytes[k + 1] * audioBytes[k + 1]);
-
-                // Increment the frequency index
-                k += 2;
-                nextFrequency = (k / 2.0 * sampleRate) / captureSize;
-            }
-
-            // Calculate the average energy in the mid frequency band
-            sampleAvgAudioEnergy = energySum / (k / 2.0);
-
-            // Accumulate the mid frequency band energy over time
-            mRunningSoundAvg[2] += sampleAvgAudioEnergy;
-
-            // Check for a beat in the mid frequency band
-            if ((sampleAvgAudioEnergy > mCurrentAvgEnergyOneSec[2]) && (mCurrentAvgEnergyOneSec[2] > 0)) {
-                if (DEBUG) Log.d(TAG, "Mid frequency band beat detected");
-                AnimationManager.playMusic("mid");
-                Thread.sleep(sleep);
-            }
-
-            energySum = 0;
-
-            // Sum the energy in the mid-high frequency band
-            while (nextFrequency < MID_HIGH_FREQUENCY) {
-                // Calculate the energy of the current frequency
-                energySum += Math.sqrt(audioBytes[k] * audioBytes[k] + audioBytes[k + 1] * audioBytes[k + 1]);
-
-                // Increment the frequency index
-                k += 2;
-                nextFrequency = (k / 2.0 * sampleRate) / captureSize;
-            }
-
-            // Calculate the average energy in the mid-high frequency band
-            sampleAvgAudioEnergy = energySum / (k / 2.0);
-
-            // Accumulate the mid high-frequency band energy over time
-            mRunningSoundAvg[3] += sampleAvgAudioEnergy;
-
-            // Check for a beat in the mid-high frequency band
-            if ((sampleAvgAudioEnergy > mCurrentAvgEnergyOneSec[3]) && (mCurrentAvgEnergyOneSec[3] > 0)) {
-                if (DEBUG) Log.d(TAG, "Mid-high frequency band beat detected");
-                AnimationManager.playMusic("mid_high");
-                Thread.sleep(sleep);
-            }
-
-            // Second Byte: Only imaginary part of the last frequency (include in highs)
-            energySum = Math.abs(audioBytes[1]);
-
-            // Sum the energy in the high frequency band
-            while (nextFrequency < HIGH_FREQUENCY) {
-                // Calculate the energy of the current frequency
-                energySum += Math.sqrt(audioBytes[k] * audioBytes[k] + audioBytes[k + 1] * audioBytes[k + 1]);
-
-                // Increment the frequency index
-                k += 2;
-                nextFrequency = (k / 2.0 * sampleRate) / captureSize;
-            }
-
-            // Calculate the average energy in the high frequency band
-            sampleAvgAudioEnergy = energySum / (k / 2.0);
-
-            // Accumulate the high frequency band energy over time
-            mRunningSoundAvg[4] += sampleAvgAudioEnergy;
-
-            // Check for a beat in the high frequency band
-            if ((sampleAvgAudioEnergy > mCurrentAvgEnergyOneSec[4]) && (mCurrentAvgEnergyOneSec[4] > 0)) {
-                if (DEBUG) Log.d(TAG, "High frequency band beat detected");
-                AnimationManager.playMusic("high");
-                Thread.sleep(sleep);
-            }
-        } catch (Exception e) {
-            if (DEBUG) Log.d(TAG, "Exception while processing audio for music visualizer | exception: " + e);
-        } finally {
-            long currentTime = System.currentTimeMillis();
-            if (currentTime - mSystemTimeStartSec >= 1000) {
-                mCurrentAvgEnergyOneSec[0] = mRunningSoundAvg[0] / mNumberOfSamplesInOneSec;
-                mCurrentAvgEnergyOneSec[1] = mRunningSoundAvg[1] / mNumberOfSamplesInOneSec;
-                mCurrentAvgEnergyOneSec[2] = mRunningSoundAvg[2] / mNumberOfSamplesInOneSec;
-                mCurrentAvgEnergyOneSec[3] = mRunningSoundAvg[3] / mNumberOfSamplesInOneSec;
-                mCurrentAvgEnergyOneSec[4] = mRunningSoundAvg[4] / mNumberOfSamplesInOneSec;
-
-
-                // Reset the running energy sum and sample count
-                mRunningSoundAvg[0] = 0;
-                mRunningSoundAvg[1] = 0;
-                mRunningSoundAvg[2] = 0;
-                mRunningSoundAvg[3] = 0;
-                mRunningSoundAvg[4] = 0;
-                mNumberOfSamplesInOneSec = 0;
-
-                // Update the start time for the next one-second interval
-                mSystemTimeStartSec = currentTime;
-            }
-            mNumberOfSamplesInOneSec++;
+        MusicMailbox.Frame frame = mMailbox.getBack();
+        frame.beats = mAnalyzer.analyze(audioBytes, samplingRate, frame.energies);
+        if (DEBUG && frame.beats != 0) Log.d(TAG, "Beat detected | bands: " + Integer.toBinaryString(frame.beats));
+        mMailbox.publish();
+        if (mRenderLoop.requestStart()) {
+            RenderThread.post(() -> {
+                if (mRenderLoop.start(SystemClock.uptimeMillis()) >= 0) mRenderRunnable.run();
+            });
         }
     }
+
+    // Runs on the render thread, one tick of mRenderLoop
+    private final Runnable mRenderRunnable = new Runnable() {
+        @Override
+        public void run() {
+            long nextFrame = mRenderLoop.tick(SystemClock.uptimeMillis());
+            if (nextFrame >= 0) RenderThread.getHandler().postAtTime(this, nextFrame);
+        }
+    };
 }
@@ -19,84 +19,113 @@ package co.aospa.glyph.Services;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
-import android.content.ContentResolver;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.pm.PackageManager;
-import android.content.SharedPreferences;
-import android.database.ContentObserver;
+import android.content.IntentFilter;
 import android.os.Handler;
-import android.os.HandlerThread;
 import android.os.IBinder;
-import android.os.Looper;
-import android.os.PowerManager;
-import android.os.PowerManager.WakeLock;
-import android.preference.PreferenceManager;
-import android.provider.Settings;
+import android.os.SystemClock;
+import android.os.UserHandle;
 import android.service.notification.NotificationListenerService;
 import android.service.notification.StatusBarNotification;
 import android.util.Log;
 
-import com.android.internal.util.ArrayUtils;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.HashSet;
 
 import co.aospa.glyph.Constants.Constants;
 import co.aospa.glyph.Manager.AnimationManager;
+import co.aospa.glyph.Manager.AnimationQueue;
+import co.aospa.glyph.Manager.GlyphConfig;
+import co.aospa.glyph.Manager.RenderThread;
 import co.aospa.glyph.Manager.SettingsManager;
 import co.aospa.glyph.Manager.StatusManager;
+import co.aospa.glyph.Manager.WakeLockManager;
+import co.aospa.glyph.Rules.NotificationRule;
+import co.aospa.glyph.Rules.NotificationRules;
+import co.aospa.glyph.Utils.AlertTracker;
+import co.aospa.glyph.Utils.AnimationIndex;
+import co.aospa.glyph.Utils.ChannelCache;
+import co.aospa.glyph.Utils.FrameCache;
+import co.aospa.glyph.Utils.GroupTracker;
+import co.aospa.glyph.Utils.NotificationCoalescer;
+import co.aospa.glyph.Utils.ResourceUtils;
 
 public class NotificationService extends NotificationListenerService
-        implements SharedPreferences.OnSharedPreferenceChangeListener {
+        implements SettingsManager.OnConfigChangedListener {
 
     private static final String TAG = "GlyphNotification";
     private static final boolean DEBUG = true;
 
     private NotificationManager mNotificationManager;
-    private PowerManager mPowerManager;
-    private WakeLock mWakeLock;
 
-    private HandlerThread thread;
     private Handler mThreadHandler;
 
-    private ContentResolver mContentResolver;
-    private SettingObserver mSettingObserver;
+    private ChannelCache mChannelCache;
+    // Reused for every ranking lookup, only touched on the main thread
+    private final Ranking mRanking = new Ranking();
+    private NotificationCoalescer mCoalescer;
+    private final AlertTracker mAlertTracker = new AlertTracker();
+    private final GroupTracker mGroupTracker = new GroupTracker();
 
-    private SharedPreferences mSharedPreferences;
+    // Identifies the pending burst replays on the render thread
+    private final Object mBurstToken = new Object();
+
+    // Keys of the active notifications that keep the essential LED on
+    private final HashSet<String> mEssentialKeys = new HashSet<>();
 
     @Override
     public void onCreate() {
         if (DEBUG) Log.d(TAG, "Creating service");
-        
-        // Add a handler thread
-        thread = new HandlerThread("NotificationService");
-        thread.start();
-        Looper looper = thread.getLooper();
-        mThreadHandler = new Handler(looper);
+
+        mThreadHandler = RenderThread.getHandler();
         
         mNotificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
-        mPowerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
-        mWakeLock = mPowerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, TAG);
-        mContentResolver = getContentResolver();
-        mSettingObserver = new SettingObserver();
-        mSettingObserver.register(mContentResolver);
-        mSharedPreferences = PreferenceManager.getDefaultSharedPreferences(this);
-        mSharedPreferences.registerOnSharedPreferenceChangeListener(this);
+        mChannelCache = new ChannelCache(this);
+        mCoalescer = new NotificationCoalescer(
+                ResourceUtils.getInteger("glyph_settings_notifs_burst_window"),
+                ResourceUtils.getInteger("glyph_settings_notifs_burst_repeats"),
+                ResourceUtils.getInteger("glyph_settings_notifs_rate_capacity"),
+                ResourceUtils.getInteger("glyph_settings_notifs_rate_refill"));
+        IntentFilter packageFilter = new IntentFilter();
+        packageFilter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        packageFilter.addDataScheme("package");
+        registerReceiver(mPackageReceiver, packageFilter);
+        SettingsManager.addOnConfigChangedListener(this);
         super.onCreate();
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         if (DEBUG) Log.d(TAG, "Starting service");
-        onNotificationUpdated();
         return super.onStartCommand(intent, flags, startId);
     }
 
+    @Override
+    public void onListenerConnected() {
+        if (DEBUG) Log.d(TAG, "onListenerConnected");
+        onNotificationUpdated();
+    }
+
+    @Override
+    public void onListenerDisconnected() {
+        if (DEBUG) Log.d(TAG, "onListenerDisconnected");
+        // Removals are not delivered while unbound, so the keys may be stale
+        mAlertTracker.clear();
+        mGroupTracker.clear();
+    }
+
     @Override
     public void onDestroy() {
         if (DEBUG) Log.d(TAG, "Destroying service");
+        mThreadHandler.removeCallbacksAndMessages(mBurstToken);
         AnimationManager.stopEssential();
-        mSharedPreferences.unregisterOnSharedPreferenceChangeListener(this);
-        mSettingObserver.unregister(mContentResolver);
-        thread.quit();
+        SettingsManager.removeOnConfigChangedListener(this);
+        unregisterReceiver(mPackageReceiver);
         super.onDestroy();
     }
 
@@ -109,123 +138,169 @@ public class NotificationService extends NotificationListenerService
     public void onNotificationPosted(StatusBarNotification sbn){
         if (Constants.CONTEXT == null) return;
         if (DEBUG) Log.d(TAG, "onNotificationPosted");
-        if (!SettingsManager.isGlyphNotifsEnabled()) return;
-        String packageName = sbn.getPackageName();
-        String packageChannelID = sbn.getNotification().getChannelId();
-        int packageImportance = -1;
-        boolean packageCanBypassDnd = false;
-        int interruptionFilter = mNotificationManager.getCurrentInterruptionFilter();
-        try {
-            Context packageContext = createPackageContext(packageName, 0);
-            NotificationManager packageNotificationManager = (NotificationManager) packageContext.getSystemService(Context.NOTIFICATION_SERVICE);
-            NotificationChannel packageChannel = packageNotificationManager.getNotificationChannel(packageChannelID);
-            if (packageChannel != null) {
-                packageImportance = packageChannel.getImportance();
-                packageCanBypassDnd = packageChannel.canBypassDnd();
+        // Tracked even while disabled so that enabling does not replay old updates
+        boolean alert = mAlertTracker.onPosted(sbn.getKey(), sbn.getNotification());
+        GlyphConfig config = SettingsManager.getConfig();
+        if (!config.isNotifsEnabled()) return;
+        NotificationRule rule = getRule(config, sbn, mNotificationManager.getCurrentInterruptionFilter());
+        long now = SystemClock.uptimeMillis();
+        if (rule != null && rule.shouldPlay() && alert && mGroupTracker.shouldAlert(sbn)) {
+            // Only notifications playing the same rule share a burst
+            switch (mCoalescer.offer(sbn.getPackageName(), rule, now)) {
+                case NotificationCoalescer.RESULT_PLAY:
+                    playRule(rule, 0);
+                    mThreadHandler.postAtTime(() -> replayBurst(rule), mBurstToken,
+                            now + mCoalescer.getBurstWindow());
+                    break;
+                case NotificationCoalescer.RESULT_MERGED:
+                    if (DEBUG) Log.d(TAG, "Merged into burst | package: " + sbn.getPackageName());
+                    break;
+                case NotificationCoalescer.RESULT_SUPPRESSED:
+                    if (DEBUG) Log.d(TAG, "Rate limited | package: " + sbn.getPackageName());
+                    break;
             }
-        } catch (PackageManager.NameNotFoundException e) {}
-        if (DEBUG) Log.d(TAG, "onNotificationPosted: package:" + packageName + " | channel id: " + packageChannelID + " | importance: " + packageImportance + " | can bypass dnd: " + packageCanBypassDnd);
-        if (SettingsManager.isGlyphNotifsAppEnabled(packageName)
-                        && !sbn.isOngoing()
-                        && !ArrayUtils.contains(Constants.APPS_TO_IGNORE, packageName)
-                        && !ArrayUtils.contains(Constants.NOTIFS_TO_IGNORE, packageName + ":" + packageChannelID)
-                        && (packageImportance >= NotificationManager.IMPORTANCE_DEFAULT || packageImportance == -1)
-                        && (interruptionFilter <= NotificationManager.INTERRUPTION_FILTER_ALL || packageCanBypassDnd)) {
-            mWakeLock.acquire(2500);
-            mThreadHandler.post(() -> {
-                AnimationManager.playCsv(SettingsManager.getGlyphNotifsAnimation());
-            });
         }
-        if (SettingsManager.isGlyphNotifsAppEssential(packageName)
-                        && !sbn.isOngoing()
-                        && !ArrayUtils.contains(Constants.APPS_TO_IGNORE, packageName)
-                        && !ArrayUtils.contains(Constants.NOTIFS_TO_IGNORE, packageName + ":" + packageChannelID)
-                        && (packageImportance >= NotificationManager.IMPORTANCE_DEFAULT || packageImportance == -1)
-                        && (interruptionFilter <= NotificationManager.INTERRUPTION_FILTER_ALL || packageCanBypassDnd)
+        if (rule != null && rule.isEssential()
                         && mNotificationManager.isNotificationPolicyAccessGranted()) {
-            mThreadHandler.post(() -> {
-                AnimationManager.playEssential();
-            });
+            mEssentialKeys.add(sbn.getKey());
+            AnimationQueue.submit(AnimationQueue.PRIORITY_ESSENTIAL, AnimationManager::playEssential);
+        } else {
+            // An update may have turned an essential notification into a regular one
+            removeEssentialKey(sbn.getKey());
         }
     }
 
     @Override
     public void onNotificationRemoved(StatusBarNotification sbn){
         if (DEBUG) Log.d(TAG, "onNotificationRemoved: package:" + sbn.getPackageName() + " | channel id: " + sbn.getNotification().getChannelId());
+        mAlertTracker.onRemoved(sbn.getKey());
+        removeEssentialKey(sbn.getKey());
+    }
+
+    @Override
+    public void onInterruptionFilterChanged(int interruptionFilter) {
+        if (DEBUG) Log.d(TAG, "onInterruptionFilterChanged: " + interruptionFilter);
         onNotificationUpdated();
     }
 
     @Override
-    public void onSharedPreferenceChanged(SharedPreferences preference, String key) {
-        if (key.equals("glyph_settings_notifs_sub_essential")) {
-            if (DEBUG) Log.d(TAG, "onSharedPreferenceChanged: glyph_settings_notifs_sub_essential");
-            onNotificationUpdated();
+    public void onNotificationChannelModified(String pkg, UserHandle user,
+            NotificationChannel channel, int modificationType) {
+        if (DEBUG) Log.d(TAG, "onNotificationChannelModified: package:" + pkg + " | channel id: " + channel.getId());
+        mChannelCache.invalidate(pkg, channel.getId());
+    }
+
+    @Override
+    public void onConfigChanged(GlyphConfig config) {
+        if (DEBUG) Log.d(TAG, "onConfigChanged");
+        onNotificationUpdated();
+    }
+
+    /**
+     * Returns the rule deciding what a notification does, or null if it does
+     * not pass the ongoing, importance and DND checks shared by all rules.
+     */
+    private NotificationRule getRule(GlyphConfig config, StatusBarNotification sbn, int interruptionFilter) {
+        if (sbn.isOngoing()) return null;
+        Notification notification = sbn.getNotification();
+        String packageName = sbn.getPackageName();
+        String packageChannelID = notification.getChannelId();
+        int packageImportance;
+        boolean packageCanBypassDnd;
+        RankingMap rankingMap = getCurrentRanking();
+        if (rankingMap != null && rankingMap.getRanking(sbn.getKey(), mRanking)) {
+            // The ranking is kept current by the system, so channel changes
+            // are seen even though onNotificationChannelModified is not called
+            NotificationChannel packageChannel = mRanking.getChannel();
+            packageImportance = mRanking.getImportance();
+            packageCanBypassDnd = packageChannel != null && packageChannel.canBypassDnd();
+        } else {
+            ChannelCache.ChannelInfo channel = mChannelCache.get(packageName, packageChannelID);
+            packageImportance = channel.importance;
+            packageCanBypassDnd = channel.canBypassDnd;
         }
+        if (DEBUG) Log.d(TAG, "getRule: package:" + packageName + " | channel id: " + packageChannelID + " | importance: " + packageImportance + " | can bypass dnd: " + packageCanBypassDnd);
+        if (packageImportance < NotificationManager.IMPORTANCE_DEFAULT && packageImportance != -1) return null;
+        if (interruptionFilter > NotificationManager.INTERRUPTION_FILTER_ALL && !packageCanBypassDnd) return null;
+
+        NotificationRules rules = config.getNotificationRules();
+        CharSequence title = rules.needsTitle() && notification.extras != null
+                ? notification.extras.getCharSequence(Notification.EXTRA_TITLE) : null;
+        return rules.evaluate(packageName, packageChannelID, notification.category, packageImportance, title);
     }
 
+    // played is how many plays of the same burst are queued ahead, each extends the wait budget
+    private void playRule(NotificationRule rule, int played) {
+        long duration = WakeLockManager.getAnimationDuration(rule.getAnimation());
+        WakeLockManager.post(duration, rule.getPriority(),
+                AnimationQueue.NOTIFICATION_TIMEOUT + played * duration, () -> {
+            AnimationManager.playCsv(rule.getAnimation(), rule.getPriority());
+        });
+    }
+
+    private void removeEssentialKey(String key) {
+        if (mEssentialKeys.remove(key) && mEssentialKeys.isEmpty()) {
+            if (DEBUG) Log.d(TAG, "Last essential notification removed");
+            AnimationManager.stopEssential();
+        }
+    }
+
+    // Full rescan, only needed when the listener connects or the rules change
     private void onNotificationUpdated() {
         if (DEBUG) Log.d(TAG, "onNotificationUpdated");
-        boolean playEssential = false;
-        if (SettingsManager.isGlyphNotifsEnabled()) {
+        GlyphConfig config = SettingsManager.getConfig();
+        if (config.isNotifsEnabled()) {
             if (!mNotificationManager.isNotificationPolicyAccessGranted()) return;
             StatusBarNotification[] activeNotifications = getActiveNotifications();
+            if (activeNotifications == null) return;
+            mEssentialKeys.clear();
+            int interruptionFilter = mNotificationManager.getCurrentInterruptionFilter();
             for (StatusBarNotification sbn : activeNotifications) {
-                String packageName = sbn.getPackageName();
-                String packageChannelID = sbn.getNotification().getChannelId();
-                int packageImportance = -1;
-                boolean packageCanBypassDnd = false;
-                int interruptionFilter = mNotificationManager.getCurrentInterruptionFilter();
-                try {
-                    Context packageContext = createPackageContext(packageName, 0);
-                    NotificationManager packageNotificationManager = (NotificationManager) packageContext.getSystemService(Context.NOTIFICATION_SERVICE);
-                    NotificationChannel packageChannel = packageNotificationManager.getNotificationChannel(packageChannelID);
-                    if (packageChannel != null) {
-                        packageImportance = packageChannel.getImportance();
-                        packageCanBypassDnd = packageChannel.canBypassDnd();
-                    }
-                } catch (PackageManager.NameNotFoundException e) {}
-                if (DEBUG) Log.d(TAG, "onNotificationUpdated: package:" + packageName + " | channel id: " + packageChannelID + " | importance: " + packageImportance + " | can bypass dnd: " + packageCanBypassDnd);
-                if (SettingsManager.isGlyphNotifsAppEssential(packageName)
-                                && !sbn.isOngoing()
-                                && !ArrayUtils.contains(Constants.APPS_TO_IGNORE, packageName)
-                                && !ArrayUtils.contains(Constants.NOTIFS_TO_IGNORE, packageName + ":" + packageChannelID)
-                                && (packageImportance >= NotificationManager.IMPORTANCE_DEFAULT || packageImportance == -1)
-                                && (interruptionFilter <= NotificationManager.INTERRUPTION_FILTER_ALL || packageCanBypassDnd)) {
-                    if (DEBUG) Log.d(TAG, "onNotificationUpdated: found essential notification | package:" + packageName);
-                    playEssential = true;
+                NotificationRule rule = getRule(config, sbn, interruptionFilter);
+                if (rule != null && rule.isEssential()) {
+                    if (DEBUG) Log.d(TAG, "onNotificationUpdated: found essential notification | package:" + sbn.getPackageName());
+                    mEssentialKeys.add(sbn.getKey());
                 }
             }
+        } else {
+            mEssentialKeys.clear();
+            mGroupTracker.clear();
         }
-        if (playEssential) {
-            mThreadHandler.post(() -> {
-                AnimationManager.playEssential();
-            });
+        if (!mEssentialKeys.isEmpty()) {
+            AnimationQueue.submit(AnimationQueue.PRIORITY_ESSENTIAL, AnimationManager::playEssential);
         } else {
             AnimationManager.stopEssential();
         }
     }
 
-    private class SettingObserver extends ContentObserver {
-        public SettingObserver() {
-            super(new Handler());
-        }
-
-        public void register(ContentResolver cr) {
-            cr.registerContentObserver(Settings.Secure.getUriFor(
-                Constants.GLYPH_ENABLE), false, this);
-            cr.registerContentObserver(Settings.Secure.getUriFor(
-                Constants.GLYPH_NOTIFS_ENABLE), false, this);
-        }
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
+        mChannelCache.dump(pw);
+        pw.println("Essential notifications: " + mEssentialKeys.size());
+        mAlertTracker.dump(pw);
+        mGroupTracker.dump(pw);
+        mCoalescer.dump(pw);
+        WakeLockManager.dump(pw);
+        AnimationManager.dump(pw);
+        AnimationIndex.dump(pw);
+        FrameCache.dump(pw);
+    }
 
-        public void unregister(ContentResolver cr) {
-            cr.unregisterContentObserver(this);
+    // Runs on the render thread once the burst window of a rule has closed
+    private void replayBurst(NotificationRule rule) {
+        int repeats = mCoalescer.takeRepeats(rule, SystemClock.uptimeMillis());
+        if (repeats == 0) return;
+        if (DEBUG) Log.d(TAG, "Replaying burst | animation: " + rule.getAnimation() + " | repeats: " + repeats);
+        for (int i = 0; i < repeats; i++) {
+            playRule(rule, i);
         }
+    }
 
+    private final BroadcastReceiver mPackageReceiver = new BroadcastReceiver() {
         @Override
-        public void onChange(boolean selfChange) {
-            if (DEBUG) Log.d(TAG, "SettingObserver: onChange");
-            onNotificationUpdated();
-            super.onChange(selfChange);
+        public void onReceive(Context context, Intent intent) {
+            if (intent.getData() == null) return;
+            mChannelCache.invalidatePackage(intent.getData().getSchemeSpecificPart());
         }
-    }
+    };
 }
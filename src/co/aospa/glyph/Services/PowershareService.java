@@ -17,37 +17,34 @@
 package co.aospa.glyph.Services;
 
 import android.app.Service;
-import android.content.Context;
 import android.content.Intent;
 import android.os.FileObserver;
+import android.os.Handler;
 import android.os.IBinder;
-import android.os.PowerManager;
-import android.os.PowerManager.WakeLock;
 import android.util.Log;
 
 import co.aospa.glyph.Constants.Constants;
+import co.aospa.glyph.Constants.DeviceProfile;
 import co.aospa.glyph.Manager.AnimationManager;
+import co.aospa.glyph.Manager.AnimationQueue;
+import co.aospa.glyph.Manager.RenderThread;
+import co.aospa.glyph.Manager.WakeLockManager;
 import co.aospa.glyph.Utils.FileUtils;
-import co.aospa.glyph.Utils.ResourceUtils;
 
 public class PowershareService extends Service {
 
     private static final String TAG = "GlyphPowershareService";
     private static final boolean DEBUG = true;
 
-    private static final String POWERSHARE_ACTIVE = ResourceUtils.getString("glyph_settings_paths_powershare_active_absolute");
-    private static final String POWERSHARE_ENABLED = ResourceUtils.getString("glyph_settings_paths_powershare_enabled_absolute");
+    private static final String POWERSHARE_ACTIVE = DeviceProfile.get().getPowershareActivePath();
+    private static final String POWERSHARE_ENABLED = DeviceProfile.get().getPowershareEnabledPath();
 
     private PowershareActiveObserver mPowershareActiveObserver;
-    private PowerManager mPowerManager;
-    private WakeLock mWakeLock;
 
     @Override
     public void onCreate() {
         if (DEBUG) Log.d(TAG, "Creating service");
         mPowershareActiveObserver = new PowershareActiveObserver();
-        mPowerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
-        mWakeLock = mPowerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, TAG);
     }
 
     @Override
@@ -104,40 +101,39 @@ public class PowershareService extends Service {
         }
     };
 
-    private class PowershareActiveObserver extends Thread {
+    private class PowershareActiveObserver implements Runnable {
 
-        private boolean lastState = false;
-        private boolean pause = true;
-        private boolean ended = false;
+        private static final long POLL_INTERVAL = 500;
+
+        private final Handler mHandler = RenderThread.getHandler();
 
-        private Object mPowershareActiveObserverLock = new Object();
+        // Only touched on the render thread
+        private boolean lastState = false;
+        private volatile boolean pause = true;
 
         public void startWatching() {
             if (DEBUG) Log.e(TAG, "PowershareActiveObserver: startWatching");
-            if (super.isAlive()) return;
-            super.start();
         }
 
         public void continueWatching() {
             if (DEBUG) Log.e(TAG, "PowershareActiveObserver: continueWatching");
             if (!pause) return;
             pause = false;
-            synchronized (mPowershareActiveObserverLock) {
-                mPowershareActiveObserverLock.notify();
-            }
+            mHandler.post(this);
         }
 
         public void pauseWatching() {
             if (DEBUG) Log.e(TAG, "PowershareActiveObserver: pauseWatching");
             if (pause) return;
-            lastState = false;
             pause = true;
+            mHandler.removeCallbacks(this);
+            // Behind any poll that is running, so it cannot set the state again
+            mHandler.post(() -> lastState = false);
         }
 
         public void stopWatching() {
             if (DEBUG) Log.e(TAG, "PowershareActiveObserver: stopWatching");
-            if (pause) this.continueWatching();
-            ended = true;
+            pauseWatching();
         }
 
         private void updatePowershareState() {
@@ -145,30 +141,21 @@ public class PowershareService extends Service {
             if (FileUtils.readLineInt(POWERSHARE_ACTIVE) == 1) {
                 if (lastState) return;
                 lastState = true;
-                mWakeLock.acquire(2500);
-                AnimationManager.playCsv("powershare", true);
+                WakeLockManager.post(WakeLockManager.getAnimationDuration("powershare"),
+                        AnimationQueue.PRIORITY_NOTIFICATION, AnimationQueue.NOTIFICATION_TIMEOUT, () -> {
+                    AnimationManager.playCsv("powershare");
+                });
             } else {
                 lastState = false;
             }
         }
 
+        // Polls on the render thread, the animation is queued behind the poll
         @Override
         public void run() {
-            if (DEBUG) Log.e(TAG, "PowershareActiveObserver: run");
-            while (!ended) {
-                synchronized (mPowershareActiveObserverLock) {
-                    if (pause) {
-                        try {
-                            if (DEBUG) Log.d(TAG, "mPowershareActiveObserverLock.wait()");
-                            mPowershareActiveObserverLock.wait();
-                        } catch (InterruptedException e) {}
-                    }
-                }
-                updatePowershareState();
-                try {
-                    Thread.sleep(500);
-                } catch (InterruptedException e) {}
-            }
+            if (pause) return;
+            updatePowershareState();
+            if (!pause) mHandler.postDelayed(this, POLL_INTERVAL);
         }
     }
 }
@@ -25,18 +25,17 @@ import android.media.AudioManager;
 import android.net.Uri;
 import android.os.IBinder;
 import android.os.Handler;
-import android.os.HandlerThread;
-import android.os.Looper;
 import android.util.Log;
 
 import co.aospa.glyph.Manager.AnimationManager;
+import co.aospa.glyph.Manager.AnimationQueue;
+import co.aospa.glyph.Manager.RenderThread;
 
 public class VolumeLevelService extends Service {
 
     private static final String TAG = "GlyphVolumeLevelService";
     private static final boolean DEBUG = true;
 
-    private HandlerThread thread;
     private Handler mThreadHandler;
     private ContentResolver mContentResolver;
     private VolumeObserver mVolumeObserver;
@@ -47,12 +46,8 @@ public class VolumeLevelService extends Service {
     @Override
     public void onCreate() {
         if (DEBUG) Log.d(TAG, "Creating service");
-        
-        // Add a handler thread
-        thread = new HandlerThread("VolumeLevelService");
-        thread.start();
-        Looper looper = thread.getLooper();
-        mThreadHandler = new Handler(looper);
+
+        mThreadHandler = RenderThread.getHandler();
 
         audioManager = (AudioManager) getSystemService(AudioManager.class);
 
@@ -78,7 +73,7 @@ public class VolumeLevelService extends Service {
     public void onDestroy() {
         if (DEBUG) Log.d(TAG, "Destroying service");
         mVolumeObserver.unregister(mContentResolver);
-        thread.quit();
+        mThreadHandler.removeCallbacks(dismissVolume);
         super.onDestroy();
     }
 
@@ -130,8 +125,8 @@ public class VolumeLevelService extends Service {
                     if (DEBUG) Log.d(TAG, "Increased: " + (int) (Math.floor(100D / getMaxVolume() * getCurrentVolume())));
                 }
 
-                mThreadHandler.post(() -> {
-                    AnimationManager.playVolume((int) (Math.floor(100D / getMaxVolume() * getCurrentVolume())), false);
+                AnimationQueue.submit(AnimationQueue.PRIORITY_LEVEL, () -> {
+                    AnimationManager.playVolume((int) (Math.floor(100D / getMaxVolume() * getCurrentVolume())));
                 });
                 mThreadHandler.postDelayed(dismissVolume, 3000);
                 previousVolume = getCurrentVolume();
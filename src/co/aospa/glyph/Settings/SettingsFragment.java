@@ -187,7 +187,8 @@ public class SettingsFragment extends PreferenceFragment implements OnPreference
     @Override
     public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
         if (key.equals(Constants.GLYPH_MUSIC_VISUALIZER_ENABLE)) {
-            boolean isChecked = SettingsManager.isGlyphMusicVisualizerEnabled();
+            // Listener order is undefined, the config snapshot may not be reloaded yet
+            boolean isChecked = sharedPreferences.getBoolean(key, false) && SettingsManager.isGlyphEnabled();
             mMusicVisualizerPreference.setChecked(isChecked);
             mFlipPreference.setEnabled(!isChecked);
             mNotifsPreference.setEnabled(!isChecked);
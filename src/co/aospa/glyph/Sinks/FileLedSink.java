@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Sinks;
+
+import java.io.File;
+
+import co.aospa.glyph.Utils.LedNode;
+
+/**
+ * Writes LED output to plain files in a directory, named like the sysfs
+ * nodes they stand in for. Useful to run playback off-device.
+ */
+public final class FileLedSink extends NodeLedSink {
+
+    public static final String FRAME_FILE = "frame_brightness";
+    public static final String SINGLE_FILE = "single_brightness";
+    public static final String ALL_FILE = "all_brightness";
+
+    public FileLedSink(File directory) {
+        super(new LedNode(new File(directory, FRAME_FILE).getPath(), true),
+                new LedNode(new File(directory, SINGLE_FILE).getPath(), true),
+                new LedNode(new File(directory, ALL_FILE).getPath(), true),
+                null);
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Sinks;
+
+/**
+ * Destination for LED output. Values are final brightness levels, already
+ * scaled to the current brightness setting.
+ */
+public interface LedSink {
+
+    /** Writes one value per LED. The array is reused by the caller. */
+    void writeFrame(int[] frame);
+
+    void writeSingle(int led, int brightness);
+
+    void writeAll(int brightness);
+
+    void close();
+}
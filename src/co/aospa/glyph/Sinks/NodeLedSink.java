@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Sinks;
+
+import java.io.IOException;
+
+import co.aospa.glyph.Utils.LedNode;
+
+/**
+ * Writes LED output to a set of persistent nodes, one for frames, one for
+ * single LEDs and one for all LEDs, plus an optional operating mode node.
+ * Plain Java, so that it also runs on a host.
+ */
+public class NodeLedSink implements LedSink {
+
+    // Value written to the operating mode node before driving the LEDs
+    private static final int LED_MODE = 1;
+
+    private final LedNode frameNode;
+    private final LedNode singleNode;
+    private final LedNode allNode;
+    private final LedNode modeNode;
+    private int modeCurrent = -1;
+
+    public NodeLedSink(LedNode frameNode, LedNode singleNode, LedNode allNode, LedNode modeNode) {
+        this.frameNode = frameNode;
+        this.singleNode = singleNode;
+        this.allNode = allNode;
+        this.modeNode = modeNode;
+    }
+
+    @Override
+    public synchronized void writeFrame(int[] frame) {
+        updateMode();
+        onWritten(frameNode, frameNode.write(frame));
+    }
+
+    @Override
+    public synchronized void writeSingle(int led, int brightness) {
+        updateMode();
+        onWritten(singleNode, singleNode.write(led, brightness));
+    }
+
+    @Override
+    public synchronized void writeAll(int brightness) {
+        updateMode();
+        onWritten(allNode, allNode.write(brightness));
+    }
+
+    @Override
+    public synchronized void close() {
+        frameNode.close();
+        singleNode.close();
+        allNode.close();
+        if (modeNode != null) modeNode.close();
+        modeCurrent = -1;
+    }
+
+    /** Called after a failed write, the node is reopened on the next one. */
+    protected void onWriteFailed(String path, IOException error) {
+    }
+
+    // The operating mode is only written when it is not set yet
+    // or after a node had to be reopened.
+    private void updateMode() {
+        if (modeNode != null && modeCurrent != LED_MODE) {
+            modeCurrent = modeNode.write(LED_MODE) ? LED_MODE : -1;
+            if (modeCurrent == -1) onWriteFailed(modeNode.getPath(), modeNode.getLastError());
+        }
+    }
+
+    private void onWritten(LedNode node, boolean success) {
+        if (success) return;
+        modeCurrent = -1;
+        onWriteFailed(node.getPath(), node.getLastError());
+    }
+}
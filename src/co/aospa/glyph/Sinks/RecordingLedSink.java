@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Sinks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the LED output in memory with a System.nanoTime() timestamp per
+ * write, to measure frame timing and throughput without hardware. Only the
+ * most recent writes up to the capacity are kept.
+ */
+public final class RecordingLedSink implements LedSink {
+
+    public static final int TYPE_FRAME = 0;
+    public static final int TYPE_SINGLE = 1;
+    public static final int TYPE_ALL = 2;
+
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    public static final class Record {
+        public final long timestamp;
+        public final int type;
+        // TYPE_FRAME: one value per LED, TYPE_SINGLE: led and brightness,
+        // TYPE_ALL: brightness
+        public final int[] values;
+
+        Record(long timestamp, int type, int[] values) {
+            this.timestamp = timestamp;
+            this.type = type;
+            this.values = values;
+        }
+    }
+
+    private final int capacity;
+    private final ArrayDeque<Record> records;
+    private long dropped;
+
+    public RecordingLedSink() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public RecordingLedSink(int capacity) {
+        this.capacity = capacity;
+        records = new ArrayDeque<>(capacity);
+    }
+
+    @Override
+    public void writeFrame(int[] frame) {
+        add(TYPE_FRAME, frame.clone());
+    }
+
+    @Override
+    public void writeSingle(int led, int brightness) {
+        add(TYPE_SINGLE, new int[] {led, brightness});
+    }
+
+    @Override
+    public void writeAll(int brightness) {
+        add(TYPE_ALL, new int[] {brightness});
+    }
+
+    @Override
+    public void close() {
+    }
+
+    public synchronized List<Record> getRecords() {
+        return new ArrayList<>(records);
+    }
+
+    // Number of records that were pushed out by newer ones
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    public synchronized void clear() {
+        records.clear();
+        dropped = 0;
+    }
+
+    private synchronized void add(int type, int[] values) {
+        if (records.size() == capacity) {
+            records.removeFirst();
+            dropped++;
+        }
+        records.addLast(new Record(System.nanoTime(), type, values));
+    }
+}
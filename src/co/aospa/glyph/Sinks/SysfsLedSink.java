@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Sinks;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+
+import co.aospa.glyph.Constants.DeviceProfile;
+import co.aospa.glyph.Utils.LedNode;
+
+/** Drives the glyph LEDs through the sysfs nodes from paths.xml. */
+public final class SysfsLedSink extends NodeLedSink {
+
+    private static final String TAG = "GlyphSysfsLedSink";
+
+    private static SysfsLedSink instance;
+
+    public static synchronized SysfsLedSink getInstance() {
+        if (instance == null) {
+            DeviceProfile profile = DeviceProfile.get();
+            String modePath = profile.getModePath();
+            instance = new SysfsLedSink(
+                    new LedNode(profile.getFramePath()),
+                    new LedNode(profile.getSinglePath()),
+                    new LedNode(profile.getAllPath()),
+                    modePath.isBlank() ? null : new LedNode(modePath));
+        }
+        return instance;
+    }
+
+    private SysfsLedSink(LedNode frameNode, LedNode singleNode, LedNode allNode, LedNode modeNode) {
+        super(frameNode, singleNode, allNode, modeNode);
+    }
+
+    @Override
+    protected void onWriteFailed(String path, IOException error) {
+        if (error instanceof NoSuchFileException) {
+            Log.w(TAG, "No such file " + path + " for writing", error);
+        } else {
+            Log.e(TAG, "Could not write to file " + path, error);
+        }
+    }
+}
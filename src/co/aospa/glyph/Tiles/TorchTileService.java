@@ -22,10 +22,8 @@ import android.service.quicksettings.Tile;
 import android.service.quicksettings.TileService;
 
 import co.aospa.glyph.R;
-import co.aospa.glyph.Constants.Constants;
+import co.aospa.glyph.Manager.AnimationManager;
 import co.aospa.glyph.Manager.StatusManager;
-import co.aospa.glyph.Utils.FileUtils;
-import co.aospa.glyph.Utils.ResourceUtils;
 
 /** Quick settings tile: Glyph **/
 public class TorchTileService extends TileService {
@@ -57,11 +55,6 @@ public class TorchTileService extends TileService {
     }
 
     private void setEnabled(boolean enabled) {
-        StatusManager.setAllLedsActive(enabled);
-        FileUtils.writeAllLed(enabled ? Constants.getMaxBrightness() : 0);
-        if (StatusManager.isEssentialLedActive() && !enabled)
-            FileUtils.writeSingleLed(
-                ResourceUtils.getInteger("glyph_settings_notifs_essential_led"),
-                Constants.getMaxBrightness( )/ 100 * 7);
+        AnimationManager.setAllLeds(enabled);
     }
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+import android.app.Notification;
+
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the keys of recently posted notifications so that updates to
+ * one, like a download progressing, do not alert again. An update only
+ * counts as a new alert if it is not marked FLAG_ONLY_ALERT_ONCE and its
+ * timestamp changed, which is what apps do for a new message. The least
+ * recently posted keys are dropped once MAX_KEYS is reached.
+ */
+public final class AlertTracker {
+
+    private static final int MAX_KEYS = 256;
+
+    private final LinkedHashMap<String, Long> keys = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_KEYS;
+        }
+    };
+    private long alerted;
+    private long skipped;
+
+    /** Records a posted notification and returns whether it should alert. */
+    public synchronized boolean onPosted(String key, Notification notification) {
+        Long when = keys.put(key, notification.when);
+        boolean alert = when == null
+                || ((notification.flags & Notification.FLAG_ONLY_ALERT_ONCE) == 0
+                        && when != notification.when);
+        if (alert) {
+            alerted++;
+        } else {
+            skipped++;
+        }
+        return alert;
+    }
+
+    public synchronized void onRemoved(String key) {
+        keys.remove(key);
+    }
+
+    public synchronized void clear() {
+        keys.clear();
+    }
+
+    public synchronized void dump(PrintWriter pw) {
+        pw.println("Alert tracker: keys=" + keys.size() + " alerted=" + alerted + " skipped=" + skipped);
+    }
+}
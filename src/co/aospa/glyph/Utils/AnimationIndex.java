@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import co.aospa.glyph.Constants.DeviceProfile;
+
+/**
+ * Index of animation metadata keyed by asset path. Every asset is decoded and
+ * validated once, the first time it is looked up or when the whole index is
+ * built, so that playback, wakelock sizing and the settings can ask about an
+ * animation without opening it. Assets that fail validation are remembered
+ * too and are never played; assets that could not be read are retried.
+ */
+public final class AnimationIndex {
+
+    private static final String TAG = "GlyphAnimationIndex";
+    private static final boolean DEBUG = true;
+
+    private static final HashMap<String, AnimationInfo> animations = new HashMap<>();
+    // Path to the reason it failed validation
+    private static final HashMap<String, String> invalid = new HashMap<>();
+
+    /** Returns the metadata of an asset, or null if it is missing or invalid. */
+    public static AnimationInfo get(String path) {
+        return get(path, true);
+    }
+
+    /**
+     * Indexes every call and notification animation. The assets are read
+     * around FrameCache so indexing does not evict the animations in use.
+     */
+    public static void build() {
+        String[] callAnimations = ResourceUtils.getCallAnimations();
+        if (callAnimations != null) {
+            for (String name : callAnimations) {
+                get(ResourceUtils.getCallAnimationPath(name), false);
+            }
+        }
+        String[] notificationAnimations = ResourceUtils.getNotificationAnimations();
+        if (notificationAnimations != null) {
+            for (String name : notificationAnimations) {
+                get(ResourceUtils.getNotificationAnimationPath(name), false);
+            }
+        }
+    }
+
+    public static synchronized void dump(PrintWriter pw) {
+        pw.println("Animation index: valid=" + animations.size() + " invalid=" + invalid.size());
+        for (AnimationInfo info : animations.values()) {
+            pw.println("  " + info);
+        }
+        for (Map.Entry<String, String> entry : invalid.entrySet()) {
+            pw.println("  " + entry.getKey() + ": " + entry.getValue());
+        }
+    }
+
+    private static AnimationInfo get(String path, boolean cache) {
+        synchronized (AnimationIndex.class) {
+            AnimationInfo info = animations.get(path);
+            if (info != null || invalid.containsKey(path)) return info;
+        }
+
+        // Decode without the lock, so a lookup from the main thread never
+        // waits for the boot build on the render thread
+        GlyphFrames frames;
+        try {
+            frames = cache ? ResourceUtils.getFrames(path) : ResourceUtils.readFrames(path);
+        } catch (IOException e) {
+            // Not remembered, the next lookup reads the asset again
+            Log.w(TAG, "Failed to read animation | path: " + path, e);
+            return null;
+        }
+        String error = validate(frames);
+        AnimationInfo info = error == null ? new AnimationInfo(path, frames) : null;
+
+        synchronized (AnimationIndex.class) {
+            if (error != null) {
+                Log.w(TAG, "Invalid animation | path: " + path + " | error: " + error);
+                invalid.put(path, error);
+                return null;
+            }
+            AnimationInfo indexed = animations.putIfAbsent(path, info);
+            if (indexed != null) return indexed;
+            if (DEBUG) Log.d(TAG, "Indexed | " + info);
+            return info;
+        }
+    }
+
+    private static String validate(GlyphFrames frames) {
+        if (frames.getFrameCount() == 0)
+            return "no frames";
+        if (!DeviceProfile.get().isSupportedPatternLength(frames.getLedCount()))
+            return "unsupported LED count " + frames.getLedCount();
+        return null;
+    }
+}
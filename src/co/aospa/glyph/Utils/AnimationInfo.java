@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+import java.util.BitSet;
+
+/**
+ * Metadata of an animation asset, gathered in one pass over its frames.
+ * Brightness values are the raw asset values before any scaling.
+ */
+public final class AnimationInfo {
+
+    private final String path;
+    private final int ledCount;
+    private final int frameCount;
+    private final int framePeriod;
+    private final int peakBrightness;
+    private final float meanBrightness;
+    // LEDs that are lit in at least one frame
+    private final BitSet activeLeds;
+
+    public AnimationInfo(String path, GlyphFrames frames) {
+        this.path = path;
+        this.ledCount = frames.getLedCount();
+        this.frameCount = frames.getFrameCount();
+        this.framePeriod = frames.getFramePeriod();
+
+        int peak = 0;
+        long sum = 0;
+        BitSet active = new BitSet(ledCount);
+        for (int[] frame : frames.getFrames()) {
+            for (int i = 0; i < frame.length; i++) {
+                int value = frame[i];
+                if (value == 0) continue;
+                if (value > peak) peak = value;
+                sum += value;
+                active.set(i);
+            }
+        }
+        long values = (long) frameCount * ledCount;
+        this.peakBrightness = peak;
+        this.meanBrightness = values == 0 ? 0 : (float) sum / values;
+        this.activeLeds = active;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getLedCount() {
+        return ledCount;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public int getFramePeriod() {
+        return framePeriod;
+    }
+
+    // In ms
+    public long getDuration() {
+        return (long) frameCount * framePeriod;
+    }
+
+    public int getPeakBrightness() {
+        return peakBrightness;
+    }
+
+    public float getMeanBrightness() {
+        return meanBrightness;
+    }
+
+    public boolean isLedActive(int led) {
+        return activeLeds.get(led);
+    }
+
+    public int getActiveLedCount() {
+        return activeLeds.cardinality();
+    }
+
+    @Override
+    public String toString() {
+        return path + ": leds=" + ledCount + " frames=" + frameCount
+                + " duration=" + getDuration() + "ms peak=" + peakBrightness
+                + " mean=" + String.format("%.1f", meanBrightness)
+                + " active=" + activeLeds;
+    }
+}
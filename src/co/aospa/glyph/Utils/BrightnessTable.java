@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+/**
+ * Maps raw animation values straight to the values written to the LEDs at
+ * one brightness level, with optional gamma correction. Built whenever the
+ * brightness changes, so scaling a frame is one array lookup per LED.
+ */
+public final class BrightnessTable {
+
+    // Highest brightness value used by the animation assets
+    public static final int MAX_ASSET_VALUE = 4095;
+
+    private final int maxBrightness;
+    private final int brightness;
+    private final float gamma;
+    private final int[] table;
+
+    public BrightnessTable(int maxBrightness, int brightness, float gamma) {
+        this.maxBrightness = maxBrightness;
+        this.brightness = brightness;
+        this.gamma = gamma;
+        table = new int[Math.max(MAX_ASSET_VALUE, maxBrightness) + 1];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = compute(i);
+        }
+    }
+
+    public int getBrightness() {
+        return brightness;
+    }
+
+    // Floor of the essential LED while it is active, half of the max brightness
+    public float getEssentialBrightness() {
+        return (float) maxBrightness / 100 * 50;
+    }
+
+    public int scale(int value) {
+        if (value >= 0 && value < table.length) return table[value];
+        return compute(value);
+    }
+
+    /**
+     * Scales a frame into out, which must be as long. Unless essentialLed is
+     * -1, that LED is kept at least at the essential brightness.
+     */
+    public void scaleFrame(int[] frame, int[] out, int essentialLed) {
+        for (int i = 0; i < frame.length; i++) {
+            out[i] = scale(frame[i]);
+        }
+        if (essentialLed >= 0 && frame[essentialLed] < getEssentialBrightness()) {
+            out[essentialLed] = scale(getEssentialBrightness());
+        }
+    }
+
+    // Slow path for values that are not whole asset values
+    public int scale(float value) {
+        if (value <= 0) return 0;
+        float level = value / maxBrightness;
+        if (gamma != 1f) level = (float) Math.pow(level, gamma);
+        return Math.round(level * brightness);
+    }
+
+    private int compute(int value) {
+        return scale((float) value);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.util.HashMap;
+
+/**
+ * Caches the importance and DND bypass of notification channels, keyed by
+ * package and channel id. Looking a channel up needs a package context and
+ * a binder call, so it is done once per channel until the package or the
+ * channel changes. Only used for notifications missing from the listener's
+ * current ranking, which already carries the channel.
+ */
+public final class ChannelCache {
+
+    private static final String TAG = "GlyphChannelCache";
+    private static final boolean DEBUG = true;
+
+    public static final class ChannelInfo {
+        // -1 if the package or channel could not be found
+        public final int importance;
+        public final boolean canBypassDnd;
+
+        ChannelInfo(int importance, boolean canBypassDnd) {
+            this.importance = importance;
+            this.canBypassDnd = canBypassDnd;
+        }
+    }
+
+    private static final ChannelInfo UNKNOWN = new ChannelInfo(-1, false);
+
+    private final Context context;
+    // Nested so that hits do not build a combined key
+    private final HashMap<String, HashMap<String, ChannelInfo>> channels = new HashMap<>();
+    private long hits;
+    private long misses;
+
+    public ChannelCache(Context context) {
+        this.context = context;
+    }
+
+    public synchronized ChannelInfo get(String packageName, String channelId) {
+        HashMap<String, ChannelInfo> packageChannels = channels.get(packageName);
+        if (packageChannels == null) {
+            packageChannels = new HashMap<>();
+            channels.put(packageName, packageChannels);
+        }
+        ChannelInfo info = packageChannels.get(channelId);
+        if (info != null) {
+            hits++;
+            return info;
+        }
+        misses++;
+        info = load(packageName, channelId);
+        packageChannels.put(channelId, info);
+        return info;
+    }
+
+    public synchronized void invalidate(String packageName, String channelId) {
+        HashMap<String, ChannelInfo> packageChannels = channels.get(packageName);
+        if (packageChannels != null) packageChannels.remove(channelId);
+    }
+
+    public synchronized void invalidatePackage(String packageName) {
+        if (DEBUG) Log.d(TAG, "Invalidating package | package: " + packageName);
+        channels.remove(packageName);
+    }
+
+    public synchronized void dump(PrintWriter pw) {
+        int size = 0;
+        for (HashMap<String, ChannelInfo> packageChannels : channels.values()) {
+            size += packageChannels.size();
+        }
+        pw.println("Channel cache: packages=" + channels.size() + " channels=" + size
+                + " hits=" + hits + " misses=" + misses);
+    }
+
+    private ChannelInfo load(String packageName, String channelId) {
+        try {
+            Context packageContext = context.createPackageContext(packageName, 0);
+            NotificationManager packageNotificationManager = (NotificationManager) packageContext.getSystemService(Context.NOTIFICATION_SERVICE);
+            NotificationChannel packageChannel = packageNotificationManager.getNotificationChannel(channelId);
+            if (packageChannel != null) {
+                return new ChannelInfo(packageChannel.getImportance(), packageChannel.canBypassDnd());
+            }
+        } catch (PackageManager.NameNotFoundException e) {}
+        return UNKNOWN;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming tokenizer for the CSV animation assets. Digits are parsed straight
+ * from a reused byte buffer into a caller provided frame, so reading a frame
+ * does not allocate. Spaces, carriage returns, trailing commas and empty lines
+ * are ignored like the old line based parser did.
+ */
+public final class CsvFrameTokenizer {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private InputStream in;
+    private int position;
+    private int limit;
+    private int line;
+
+    public CsvFrameTokenizer(InputStream in) {
+        reset(in);
+    }
+
+    public void reset(InputStream in) {
+        this.in = in;
+        position = 0;
+        limit = 0;
+        line = 0;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Parses the next non-empty line into frame.
+     * Returns the number of values read, or 0 at the end of the stream.
+     */
+    public int readFrame(int[] frame) throws IOException {
+        int count = 0;
+        int value = 0;
+        boolean digits = false;
+
+        while (true) {
+            if (position == limit && !fill()) {
+                if (digits) count = store(frame, count, value);
+                if (count > 0) line++;
+                return count;
+            }
+
+            byte c = buffer[position++];
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                digits = true;
+            } else if (c == ',') {
+                if (!digits) throw new IOException("Empty value on line " + (line + 1));
+                count = store(frame, count, value);
+                value = 0;
+                digits = false;
+            } else if (c == '\n') {
+                if (digits) count = store(frame, count, value);
+                line++;
+                if (count > 0) return count;
+                value = 0;
+                digits = false;
+            } else if (c != ' ' && c != '\r' && c != '\t') {
+                throw new IOException("Unexpected character '" + (char) c + "' on line " + (line + 1));
+            }
+        }
+    }
+
+    private int store(int[] frame, int count, int value) throws IOException {
+        if (count == frame.length)
+            throw new IOException("Too many values on line " + (line + 1));
+        frame[count] = value;
+        return count + 1;
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) return false;
+        position = 0;
+        limit = read;
+        return true;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.PrintWriter;
+
+/**
+ * LRU cache of decoded animations keyed by asset path, bounded by the byte
+ * budget in glyph_settings_animations_cache_size. Shared by device playback
+ * and the settings preview, so an animation is only decoded on its first play.
+ */
+public final class FrameCache {
+
+    private static final String TAG = "GlyphFrameCache";
+    private static final boolean DEBUG = true;
+
+    // Approximate per frame cost of an int[] object on top of its values
+    private static final int FRAME_OVERHEAD = 16;
+
+    private static final LruCache<String, GlyphFrames> cache =
+            new LruCache<String, GlyphFrames>(
+                    ResourceUtils.getInteger("glyph_settings_animations_cache_size")) {
+        @Override
+        protected int sizeOf(String key, GlyphFrames frames) {
+            return getSize(frames);
+        }
+
+        @Override
+        protected void entryRemoved(boolean evicted, String key,
+                GlyphFrames oldFrames, GlyphFrames newFrames) {
+            if (DEBUG && evicted) Log.d(TAG, "Evicted | path: " + key);
+        }
+    };
+
+    public static int getSize(GlyphFrames frames) {
+        return frames.getFrameCount() * (frames.getLedCount() * Integer.BYTES + FRAME_OVERHEAD);
+    }
+
+    public static GlyphFrames get(String path) {
+        return cache.get(path);
+    }
+
+    public static void put(String path, GlyphFrames frames) {
+        cache.put(path, frames);
+    }
+
+    public static void dump(PrintWriter pw) {
+        pw.println("Frame cache: size=" + cache.size() + "/" + cache.maxSize()
+                + " hits=" + cache.hitCount() + " misses=" + cache.missCount()
+                + " evictions=" + cache.evictionCount());
+    }
+}
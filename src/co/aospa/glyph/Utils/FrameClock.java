@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+import android.os.SystemClock;
+
+/**
+ * Paces frames against absolute deadlines derived from the start time, so
+ * the time spent rendering a frame does not stretch the animation.
+ *
+ * When playback falls behind by whole frames they are either dropped to stay
+ * in sync with wall time, or rendered back to back until the clock caught up.
+ */
+public final class FrameClock {
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final long periodNanos;
+    private final boolean dropLate;
+
+    private long startTime;
+    private int frame;
+    private int lateFrames;
+    private int droppedFrames;
+
+    public FrameClock(int periodMs, boolean dropLate) {
+        this.periodNanos = periodMs * NANOS_PER_MILLI;
+        this.dropLate = dropLate;
+        start();
+    }
+
+    /** Restarts the clock, frame 0 is due now. */
+    public void start() {
+        startTime = SystemClock.uptimeNanos();
+        frame = 0;
+    }
+
+    /**
+     * Waits until the next frame is due and returns its index. If playback is
+     * behind and frames are dropped, the returned index skips past them.
+     */
+    public int awaitNextFrame() throws InterruptedException {
+        frame++;
+        long deadline = startTime + frame * periodNanos;
+        long now = SystemClock.uptimeNanos();
+        if (now < deadline) {
+            long delay = deadline - now;
+            Thread.sleep(delay / NANOS_PER_MILLI, (int) (delay % NANOS_PER_MILLI));
+        } else {
+            lateFrames++;
+            long behind = (now - deadline) / periodNanos;
+            if (dropLate && behind > 0) {
+                frame += (int) behind;
+                droppedFrames += (int) behind;
+            }
+        }
+        return frame;
+    }
+
+    public int getFrame() {
+        return frame;
+    }
+
+    public int getLateFrames() {
+        return lateFrames;
+    }
+
+    public int getDroppedFrames() {
+        return droppedFrames;
+    }
+}
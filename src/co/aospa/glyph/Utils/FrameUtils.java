@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Reader for the precompiled glyph frame files generated from the CSV assets
+ * at build time by glyph_frame_compiler (see tools/).
+ *
+ * File layout, all values big endian:
+ *   0  4  magic "GLYF"
+ *   4  1  format version
+ *   5  1  reserved
+ *   6  2  LED count
+ *   8  4  frame count
+ *  12  2  frame period in ms
+ *  14  2  reserved
+ *  16     frame count * LED count unsigned 16 bit brightness values
+ */
+public final class FrameUtils {
+
+    private static final String TAG = "GlyphFrameUtils";
+    private static final boolean DEBUG = true;
+
+    public static final int MAGIC = 0x474c5946; // "GLYF"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int DEFAULT_FRAME_PERIOD = 17;
+
+    private static final String FRAMES_DIR = "frames/";
+    private static final String FRAMES_EXTENSION = ".glyph";
+    private static final int MAX_LED_COUNT = 256;
+
+    /**
+     * Opens the compiled frames of an asset, e.g. "call/Ring", from the APK.
+     * Returns null if the asset was not compiled into this build.
+     */
+    public static InputStream openFrames(String path) {
+        return FrameUtils.class.getClassLoader()
+                .getResourceAsStream(FRAMES_DIR + path + FRAMES_EXTENSION);
+    }
+
+    public static GlyphFrames readFrames(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+
+        if (in.readInt() != MAGIC)
+            throw new IOException("Not a glyph frame file");
+
+        int version = in.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported glyph frame version " + version);
+        in.readUnsignedByte();
+
+        int ledCount = in.readUnsignedShort();
+        int frameCount = in.readInt();
+        int framePeriod = in.readUnsignedShort();
+        in.readUnsignedShort();
+
+        if (ledCount == 0 || ledCount > MAX_LED_COUNT || frameCount < 0)
+            throw new IOException("Invalid glyph frame header | leds: " + ledCount + " | frames: " + frameCount);
+
+        byte[] data = new byte[ledCount * 2];
+        int[][] frames = new int[frameCount][ledCount];
+        for (int f = 0; f < frameCount; f++) {
+            in.readFully(data);
+            int[] frame = frames[f];
+            for (int i = 0, j = 0; i < ledCount; i++, j += 2) {
+                frame[i] = ((data[j] & 0xff) << 8) | (data[j + 1] & 0xff);
+            }
+        }
+
+        return new GlyphFrames(ledCount, framePeriod == 0 ? DEFAULT_FRAME_PERIOD : framePeriod, frames);
+    }
+
+    // Fallback for assets that have no compiled frames
+    public static GlyphFrames readCsv(InputStream stream) throws IOException {
+        ArrayList<int[]> frames = new ArrayList<>();
+        CsvFrameTokenizer tokenizer = new CsvFrameTokenizer(stream);
+        int[] frame = new int[MAX_LED_COUNT];
+        int ledCount = -1;
+
+        int count;
+        while ((count = tokenizer.readFrame(frame)) > 0) {
+            if (ledCount == -1) {
+                ledCount = count;
+            } else if (count != ledCount) {
+                throw new IOException("Animation line length mismatch | line: " + tokenizer.getLine()
+                        + " | expected: " + ledCount + " | got: " + count);
+            }
+            frames.add(Arrays.copyOf(frame, ledCount));
+        }
+
+        if (ledCount == -1)
+            throw new IOException("Empty animation");
+
+        return new GlyphFrames(ledCount, DEFAULT_FRAME_PERIOD, frames.toArray(new int[0][]));
+    }
+}
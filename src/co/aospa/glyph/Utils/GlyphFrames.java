@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+/** Decoded animation: one brightness value per LED for every frame. */
+public final class GlyphFrames {
+
+    private final int ledCount;
+    private final int framePeriod;
+    private final int[][] frames;
+
+    public GlyphFrames(int ledCount, int framePeriod, int[][] frames) {
+        this.ledCount = ledCount;
+        this.framePeriod = framePeriod;
+        this.frames = frames;
+    }
+
+    public int getLedCount() {
+        return ledCount;
+    }
+
+    public int getFramePeriod() {
+        return framePeriod;
+    }
+
+    public int getFrameCount() {
+        return frames.length;
+    }
+
+    // Shared between every player of the animation, must not be modified
+    public int[] getFrame(int index) {
+        return frames[index];
+    }
+
+    public int[][] getFrames() {
+        return frames;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+import android.app.Notification;
+import android.service.notification.StatusBarNotification;
+
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Makes a bundled notification alert once per message. Apps usually post a
+ * child and update the group summary with the same timestamp for every
+ * message, so a member of a group is skipped if another member of the group
+ * already alerted for that timestamp, as are the members that the group
+ * alert behavior keeps silent. A new message has a new timestamp and always
+ * alerts; updates of the same key are left to AlertTracker.
+ */
+public final class GroupTracker {
+
+    private static final int MAX_GROUPS = 64;
+
+    private static final class Alert {
+        String key;
+        long when;
+    }
+
+    // Group key to the member that last alerted
+    private final LinkedHashMap<String, Alert> groups = new LinkedHashMap<String, Alert>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Alert> eldest) {
+            return size() > MAX_GROUPS;
+        }
+    };
+    private long skipped;
+
+    public synchronized boolean shouldAlert(StatusBarNotification sbn) {
+        if (!sbn.isGroup()) return true;
+        Notification notification = sbn.getNotification();
+        boolean summary = (notification.flags & Notification.FLAG_GROUP_SUMMARY) != 0;
+        int behavior = notification.getGroupAlertBehavior();
+        if ((summary && behavior == Notification.GROUP_ALERT_CHILDREN)
+                || (!summary && behavior == Notification.GROUP_ALERT_SUMMARY)) {
+            skipped++;
+            return false;
+        }
+        String group = sbn.getGroupKey();
+        Alert last = groups.get(group);
+        if (last != null && last.when == notification.when && !last.key.equals(sbn.getKey())) {
+            // The summary and a child describing the same message
+            skipped++;
+            return false;
+        }
+        if (last == null) {
+            last = new Alert();
+            groups.put(group, last);
+        }
+        last.key = sbn.getKey();
+        last.when = notification.when;
+        return true;
+    }
+
+    public synchronized void clear() {
+        groups.clear();
+    }
+
+    public synchronized void dump(PrintWriter pw) {
+        pw.println("Group tracker: groups=" + groups.size() + " skipped=" + skipped);
+    }
+}
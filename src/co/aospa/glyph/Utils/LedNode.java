@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A sysfs LED node that stays open between writes. Every value is formatted
+ * into a reused direct buffer and written with a single positional write at
+ * offset 0, so a frame costs one syscall instead of open, write and close.
+ * The node is reopened on the next write after an error, which is kept for
+ * the caller to report. Plain Java, so that it also runs on a host.
+ */
+public final class LedNode {
+
+    // Sign and 10 digits plus separator per value
+    private static final int MAX_VALUE_BYTES = 12;
+
+    private final String path;
+    private final boolean regularFile;
+    private FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+    private IOException lastError;
+
+    public LedNode(String path) {
+        this(path, false);
+    }
+
+    /**
+     * A regular file is created if missing and truncated after every write,
+     * so it always holds the last value like a sysfs node would.
+     */
+    public LedNode(String path, boolean regularFile) {
+        this.path = path;
+        this.regularFile = regularFile;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public synchronized boolean write(int[] values) {
+        begin(values.length * MAX_VALUE_BYTES);
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) buffer.put((byte) ' ');
+            putInt(values[i]);
+        }
+        return commit();
+    }
+
+    public synchronized boolean write(int first, int second) {
+        begin(2 * MAX_VALUE_BYTES);
+        putInt(first);
+        buffer.put((byte) ' ');
+        putInt(second);
+        return commit();
+    }
+
+    public synchronized boolean write(int value) {
+        begin(MAX_VALUE_BYTES);
+        putInt(value);
+        return commit();
+    }
+
+    public synchronized boolean write(String value) {
+        begin(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            buffer.put((byte) value.charAt(i));
+        }
+        return commit();
+    }
+
+    public synchronized void close() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Ignored, not much we can do anyway
+        }
+        channel = null;
+    }
+
+    public synchronized boolean isOpen() {
+        return channel != null;
+    }
+
+    // Why the last failed write failed
+    public synchronized IOException getLastError() {
+        return lastError;
+    }
+
+    private void begin(int capacity) {
+        if (buffer.capacity() < capacity) {
+            buffer = ByteBuffer.allocateDirect(capacity);
+        }
+        buffer.clear();
+    }
+
+    private boolean commit() {
+        buffer.flip();
+        try {
+            if (channel == null) {
+                channel = regularFile
+                        ? FileChannel.open(Paths.get(path), StandardOpenOption.WRITE,
+                                StandardOpenOption.CREATE)
+                        : FileChannel.open(Paths.get(path), StandardOpenOption.WRITE);
+            }
+            int length = buffer.remaining();
+            channel.write(buffer, 0);
+            if (regularFile) channel.truncate(length);
+            return true;
+        } catch (IOException e) {
+            lastError = e;
+        }
+        close();
+        return false;
+    }
+
+    private void putInt(int value) {
+        long v = value;
+        if (v < 0) {
+            buffer.put((byte) '-');
+            v = -v;
+        }
+        int start = buffer.position();
+        do {
+            buffer.put((byte) ('0' + (v % 10)));
+            v /= 10;
+        } while (v != 0);
+        for (int i = start, j = buffer.position() - 1; i < j; i++, j--) {
+            byte tmp = buffer.get(i);
+            buffer.put(i, buffer.get(j));
+            buffer.put(j, tmp);
+        }
+    }
+}
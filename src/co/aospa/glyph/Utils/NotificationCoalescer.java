@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rate limits and merges notification animations. A notification within the
+ * burst window of the last played one with the same burst key, e.g. its rule,
+ * is merged into it instead of queueing an animation of its own. Every app
+ * gets a token bucket that is only charged for animations that actually
+ * play, and an app without tokens left can neither play nor merge, so that a
+ * single busy chat cannot keep the glyphs going. Times are uptime
+ * milliseconds passed in by the caller.
+ */
+public final class NotificationCoalescer {
+
+    public static final int RESULT_PLAY = 0;
+    public static final int RESULT_MERGED = 1;
+    public static final int RESULT_SUPPRESSED = 2;
+
+    private static final class Bucket {
+        int tokens;
+        long updated;
+        long suppressed;
+    }
+
+    private static final class Burst {
+        long end;
+        int merged;
+    }
+
+    private final long burstWindow;
+    private final int maxRepeats;
+    // Rate limiting is off if either is not positive
+    private final int capacity;
+    private final long refillInterval;
+
+    private final HashMap<String, Bucket> buckets = new HashMap<>();
+    private final HashMap<Object, Burst> bursts = new HashMap<>();
+    private long played;
+    private long merged;
+    private long suppressed;
+
+    public NotificationCoalescer(long burstWindow, int maxRepeats, int capacity, long refillInterval) {
+        this.burstWindow = burstWindow;
+        this.maxRepeats = maxRepeats;
+        this.capacity = capacity;
+        this.refillInterval = refillInterval;
+    }
+
+    public long getBurstWindow() {
+        return burstWindow;
+    }
+
+    /**
+     * Returns RESULT_SUPPRESSED if the app is over the rate limit,
+     * RESULT_MERGED if the notification joins the current burst of its key
+     * and RESULT_PLAY if it starts a new burst and should be animated.
+     */
+    public synchronized int offer(String packageName, Object burstKey, long now) {
+        Bucket bucket = refill(packageName, now);
+        if (bucket != null && bucket.tokens == 0) {
+            bucket.suppressed++;
+            suppressed++;
+            return RESULT_SUPPRESSED;
+        }
+        Burst burst = bursts.get(burstKey);
+        if (burst != null && now < burst.end) {
+            burst.merged++;
+            merged++;
+            return RESULT_MERGED;
+        }
+        if (bucket != null) {
+            if (bucket.tokens == capacity) bucket.updated = now;
+            bucket.tokens--;
+        }
+        if (burst == null) {
+            burst = new Burst();
+            bursts.put(burstKey, burst);
+        }
+        burst.end = now + burstWindow;
+        burst.merged = 0;
+        played++;
+        return RESULT_PLAY;
+    }
+
+    /**
+     * Returns how many times the burst of a key should be replayed once its
+     * window has closed, at most the configured repeats, and ends it.
+     */
+    public synchronized int takeRepeats(Object burstKey, long now) {
+        Burst burst = bursts.get(burstKey);
+        // Still open, or already taken
+        if (burst == null || now < burst.end) return 0;
+        bursts.remove(burstKey);
+        return Math.min(burst.merged, maxRepeats);
+    }
+
+    public synchronized void dump(PrintWriter pw) {
+        pw.println("Notification coalescer: played=" + played + " merged=" + merged
+                + " suppressed=" + suppressed + " bursts=" + bursts.size());
+        for (Map.Entry<String, Bucket> entry : buckets.entrySet()) {
+            if (entry.getValue().suppressed == 0) continue;
+            pw.println("  " + entry.getKey() + ": suppressed=" + entry.getValue().suppressed);
+        }
+    }
+
+    // Returns the bucket of an app with the tokens earned until now, null if rate limiting is off
+    private Bucket refill(String packageName, long now) {
+        if (capacity <= 0 || refillInterval <= 0) return null;
+        Bucket bucket = buckets.get(packageName);
+        if (bucket == null) {
+            bucket = new Bucket();
+            bucket.tokens = capacity;
+            bucket.updated = now;
+            buckets.put(packageName, bucket);
+        } else if (bucket.tokens < capacity) {
+            long earned = (now - bucket.updated) / refillInterval;
+            if (earned >= capacity - bucket.tokens) {
+                bucket.tokens = capacity;
+                bucket.updated = now;
+            } else if (earned > 0) {
+                bucket.tokens += (int) earned;
+                // Keep the remainder so that partial intervals are not lost
+                bucket.updated += earned * refillInterval;
+            }
+        }
+        return bucket;
+    }
+}
@@ -92,37 +92,101 @@ public final class ResourceUtils {
         return notificationAnimations;
     }
 
-    public static InputStream getCallAnimation(String name) throws IOException {
+    static String getCallAnimationPath(String name) {
         if (callAnimations == null) getCallAnimations();
 
         if (ArrayUtils.contains(callAnimations, name))
-            return assetManager.open("call/" + name + ".csv");
+            return "call/" + name;
 
-        return assetManager.open("call/" + ResourceUtils.getString("glyph_settings_call_animations_default") + ".csv");
+        return "call/" + ResourceUtils.getString("glyph_settings_call_animations_default");
     }
 
-    public static InputStream getNotificationAnimation(String name) throws IOException {
+    static String getNotificationAnimationPath(String name) {
         if (notificationAnimations == null) getNotificationAnimations();
 
         if (ArrayUtils.contains(notificationAnimations, name))
-            return assetManager.open("notification/" + name + ".csv");
+            return "notification/" + name;
 
-        return assetManager.open("call/" + ResourceUtils.getString("glyph_settings_notifs_animations_default") + ".csv");
+        return "notification/" + ResourceUtils.getString("glyph_settings_notifs_animations_default");
     }
 
-    public static InputStream getAnimation(String name) throws IOException {
+    private static String getAnimationPath(String name) {
         if (callAnimations == null) getCallAnimations();
         if (notificationAnimations == null) getNotificationAnimations();
 
         if (ArrayUtils.contains(callAnimations, name)) {
-            return getCallAnimation(name);
+            return getCallAnimationPath(name);
         }
 
         if (ArrayUtils.contains(notificationAnimations, name)) {
-            return getNotificationAnimation(name);
+            return getNotificationAnimationPath(name);
+        }
+
+        return name;
+    }
+
+    public static InputStream getCallAnimation(String name) throws IOException {
+        return assetManager.open(getCallAnimationPath(name) + ".csv");
+    }
+
+    public static InputStream getNotificationAnimation(String name) throws IOException {
+        return assetManager.open(getNotificationAnimationPath(name) + ".csv");
+    }
+
+    public static InputStream getAnimation(String name) throws IOException {
+        return assetManager.open(getAnimationPath(name) + ".csv");
+    }
+
+    static GlyphFrames getFrames(String path) throws IOException {
+        GlyphFrames frames = FrameCache.get(path);
+        if (frames == null) {
+            frames = loadFrames(path);
+            FrameCache.put(path, frames);
+        }
+        return frames;
+    }
+
+    // Decodes without going through FrameCache, for one-off reads
+    static GlyphFrames readFrames(String path) throws IOException {
+        return loadFrames(path);
+    }
+
+    private static GlyphFrames loadFrames(String path) throws IOException {
+        InputStream frames = FrameUtils.openFrames(path);
+        if (frames != null) {
+            try (InputStream in = frames) {
+                return FrameUtils.readFrames(in);
+            }
         }
 
-        return assetManager.open(name + ".csv");
+        if (DEBUG) Log.d(TAG, "No compiled frames, parsing csv | path: " + path);
+        try (InputStream in = assetManager.open(path + ".csv")) {
+            return FrameUtils.readCsv(in);
+        }
+    }
+
+    public static GlyphFrames getCallAnimationFrames(String name) throws IOException {
+        return getFrames(getCallAnimationPath(name));
+    }
+
+    public static GlyphFrames getNotificationAnimationFrames(String name) throws IOException {
+        return getFrames(getNotificationAnimationPath(name));
+    }
+
+    public static GlyphFrames getAnimationFrames(String name) throws IOException {
+        return getFrames(getAnimationPath(name));
+    }
+
+    public static AnimationInfo getCallAnimationInfo(String name) {
+        return AnimationIndex.get(getCallAnimationPath(name));
+    }
+
+    public static AnimationInfo getNotificationAnimationInfo(String name) {
+        return AnimationIndex.get(getNotificationAnimationPath(name));
+    }
+
+    public static AnimationInfo getAnimationInfo(String name) {
+        return AnimationIndex.get(getAnimationPath(name));
     }
 
 }
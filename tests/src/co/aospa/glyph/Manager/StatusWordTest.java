@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * Hammers the StatusWord transitions from many threads at once and checks
+ * that no update is lost, that only one holder ever gets the exclusive flag,
+ * and that listeners see every change exactly once.
+ */
+public class StatusWordTest {
+
+    // Same layout as StatusManager
+    private static final int FLAG_ACTIVE = 1 << 0;
+    private static final int FLAG_BLOCKING = 1 << 1;
+    private static final int[] OWNED_FLAGS = {1 << 2, 1 << 3, 1 << 4, 1 << 5};
+    private static final int[] FIELD_SHIFTS = {8, 16};
+
+    private static final int STARTERS = 4;
+    private static final int ROUNDS = 200000;
+
+    @Test
+    public void singleThreadTransitions() {
+        StatusWord word = new StatusWord();
+        List<int[]> changes = new ArrayList<>();
+        word.addListener((oldState, newState) -> changes.add(new int[] {oldState, newState}));
+
+        assertTrue(word.trySetFlag(FLAG_ACTIVE, FLAG_BLOCKING));
+        assertFalse(word.trySetFlag(FLAG_ACTIVE, FLAG_BLOCKING));
+        word.setFlag(FLAG_ACTIVE, false);
+        word.setFlag(FLAG_BLOCKING, true);
+        assertFalse(word.trySetFlag(FLAG_ACTIVE, FLAG_BLOCKING));
+        word.setFlag(FLAG_BLOCKING, true);
+        word.setField(8, 200);
+        word.setField(16, 7);
+        word.setField(8, 200);
+
+        assertEquals(200, word.getField(8));
+        assertEquals(7, word.getField(16));
+        assertEquals(FLAG_BLOCKING | 200 << 8 | 7 << 16, word.get());
+        // Repeated values are not reported
+        assertEquals(5, changes.size());
+        for (int[] change : changes) {
+            assertTrue(change[0] != change[1]);
+        }
+    }
+
+    @Test
+    public void concurrentTransitions() throws InterruptedException {
+        StatusWord word = new StatusWord();
+        AtomicInteger holders = new AtomicInteger();
+        AtomicInteger maxHolders = new AtomicInteger();
+        AtomicLong starts = new AtomicLong();
+        ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+
+        // Expected listener calls per kind of change
+        AtomicLong activeRises = new AtomicLong();
+        AtomicLong[] ownedFlips = new AtomicLong[OWNED_FLAGS.length];
+        AtomicLong[] fieldChanges = new AtomicLong[FIELD_SHIFTS.length];
+        long[] expectedOwnedFlips = new long[OWNED_FLAGS.length];
+        long[] expectedFieldChanges = new long[FIELD_SHIFTS.length];
+        for (int i = 0; i < OWNED_FLAGS.length; i++) ownedFlips[i] = new AtomicLong();
+        for (int i = 0; i < FIELD_SHIFTS.length; i++) fieldChanges[i] = new AtomicLong();
+
+        word.addListener((oldState, newState) -> {
+            int changed = oldState ^ newState;
+            if (changed == 0) errors.add("Listener called without a change");
+            if ((changed & FLAG_ACTIVE) != 0 && (newState & FLAG_ACTIVE) != 0) {
+                activeRises.incrementAndGet();
+                if ((oldState & FLAG_BLOCKING) != 0)
+                    errors.add("Started while blocked | state: " + Integer.toHexString(oldState));
+            }
+            // A single compare and set only ever changes one flag or one field
+            int kinds = 0;
+            if ((changed & (FLAG_ACTIVE | FLAG_BLOCKING)) != 0) kinds++;
+            for (int i = 0; i < OWNED_FLAGS.length; i++) {
+                if ((changed & OWNED_FLAGS[i]) == 0) continue;
+                ownedFlips[i].incrementAndGet();
+                kinds++;
+            }
+            for (int i = 0; i < FIELD_SHIFTS.length; i++) {
+                if ((changed & (StatusWord.FIELD_MASK << FIELD_SHIFTS[i])) == 0) continue;
+                fieldChanges[i].incrementAndGet();
+                kinds++;
+            }
+            if (kinds != 1) errors.add("Mixed change | " + Integer.toHexString(oldState)
+                    + " -> " + Integer.toHexString(newState));
+        });
+
+        List<Thread> threads = new ArrayList<>();
+        CountDownLatch go = new CountDownLatch(1);
+
+        for (int t = 0; t < STARTERS; t++) {
+            threads.add(new Thread(() -> {
+                await(go);
+                for (int i = 0; i < ROUNDS; i++) {
+                    if (!word.trySetFlag(FLAG_ACTIVE, FLAG_BLOCKING)) continue;
+                    starts.incrementAndGet();
+                    int now = holders.incrementAndGet();
+                    maxHolders.accumulateAndGet(now, Math::max);
+                    holders.decrementAndGet();
+                    word.setFlag(FLAG_ACTIVE, false);
+                }
+            }));
+        }
+
+        threads.add(new Thread(() -> {
+            await(go);
+            for (int i = 0; i < ROUNDS; i++) {
+                word.setFlag(FLAG_BLOCKING, (i & 1) == 0);
+            }
+            word.setFlag(FLAG_BLOCKING, false);
+        }));
+
+        for (int t = 0; t < OWNED_FLAGS.length; t++) {
+            int index = t;
+            threads.add(new Thread(() -> {
+                await(go);
+                boolean status = false;
+                for (int i = 0; i < ROUNDS; i++) {
+                    // Set twice now and then, the second one must not notify
+                    boolean next = (i % 3) != 0;
+                    if (next != status) expectedOwnedFlips[index]++;
+                    status = next;
+                    word.setFlag(OWNED_FLAGS[index], status);
+                }
+            }));
+        }
+
+        for (int t = 0; t < FIELD_SHIFTS.length; t++) {
+            int index = t;
+            threads.add(new Thread(() -> {
+                await(go);
+                int value = 0;
+                for (int i = 0; i < ROUNDS; i++) {
+                    int next = (i * 7) % (StatusWord.FIELD_MASK + 1);
+                    if (next != value) expectedFieldChanges[index]++;
+                    value = next;
+                    word.setField(FIELD_SHIFTS[index], value);
+                }
+            }));
+        }
+
+        for (Thread thread : threads) thread.start();
+        go.countDown();
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(String.join("\n", errors), 0, errors.size());
+        assertEquals(1, maxHolders.get());
+        assertEquals(starts.get(), activeRises.get());
+        assertFalse(word.isSet(FLAG_ACTIVE | FLAG_BLOCKING));
+
+        // Every thread's own flag and field hold its last write
+        int expected = 0;
+        for (int i = 0; i < OWNED_FLAGS.length; i++) {
+            boolean last = ((ROUNDS - 1) % 3) != 0;
+            if (last) expected |= OWNED_FLAGS[i];
+            assertEquals("flips of flag " + i, expectedOwnedFlips[i], ownedFlips[i].get());
+        }
+        for (int i = 0; i < FIELD_SHIFTS.length; i++) {
+            int last = ((ROUNDS - 1) * 7) % (StatusWord.FIELD_MASK + 1);
+            expected |= last << FIELD_SHIFTS[i];
+            assertEquals(last, word.getField(FIELD_SHIFTS[i]));
+            assertEquals("changes of field " + i, expectedFieldChanges[i], fieldChanges[i].get());
+        }
+        assertEquals(expected, word.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package co.aospa.glyph.Tools;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.Test;
+
+import co.aospa.glyph.Music.MusicLayout;
+import co.aospa.glyph.Utils.BrightnessTable;
+
+/**
+ * Replays a short recording through the music visualizer and compares the
+ * LED frames with the ones recorded from glyph_music_replay, so that any
+ * change to the analysis, the render loop or the scaling shows up here.
+ *
+ * The expected frames were produced with
+ *   glyph_music_replay -w beats.wav -M 254 -e 2
+ *   glyph_music_replay -w beats.wav -d phone1 -l 2048
+ * and have to be regenerated the same way when the output changes on purpose.
+ */
+public class MusicReplayTest {
+
+    private static final int CAPTURE_SIZE = 1024;
+    private static final int CAPTURE_RATE = 10;
+
+    @Test
+    public void phone2Spectrum() throws IOException {
+        assertReplay(MusicLayout.PHONE2, true, new BrightnessTable(254, 254, 1f), 2,
+                "music/beats_phone2_spectrum.txt");
+    }
+
+    @Test
+    public void phone1Zones() throws IOException {
+        assertReplay(MusicLayout.PHONE1, false, new BrightnessTable(4095, 2048, 1f), -1,
+                "music/beats_phone1_zones.txt");
+    }
+
+    private void assertReplay(MusicLayout layout, boolean spectrum, BrightnessTable table,
+            int essentialLed, String expected) throws IOException {
+        MusicReplay.Wave wave = MusicReplay.readWave(readResource("music/beats.wav"), "beats.wav");
+        List<byte[]> captures = MusicReplay.captureWave(wave, CAPTURE_SIZE, CAPTURE_RATE);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MusicReplay.replay(captures, wave.rate * 1000, CAPTURE_RATE, layout, spectrum,
+                table, essentialLed, new PrintStream(out, true), null);
+
+        String[] expectedLines = new String(readResource(expected), StandardCharsets.US_ASCII).split("\n");
+        String[] lines = out.toString().split("\n");
+        for (int i = 0; i < Math.min(expectedLines.length, lines.length); i++) {
+            assertEquals("frame " + i, expectedLines[i], lines[i]);
+        }
+        assertEquals("frame count", expectedLines.length, lines.length);
+    }
+
+    private static byte[] readResource(String name) throws IOException {
+        try (InputStream in = MusicReplayTest.class.getClassLoader().getResourceAsStream(name)) {
+            if (in == null) throw new IOException("missing test resource " + name);
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that steady state frame parsing and LED node formatting do not
+ * allocate, using the allocation counter HotSpot keeps per thread.
+ */
+public class FramePathAllocationTest {
+
+    // Enough rounds for the JIT to settle before counting
+    private static final int WARMUP_ROUNDS = 20000;
+    private static final int ROUNDS = 2000;
+
+    private static final String CSV = "0, 4095, 12,0,\r\n"
+            + "\n"
+            + "1,2,3,4,5\n"
+            + "65535,0,0,0,7";
+
+    private com.sun.management.ThreadMXBean threads;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        file = File.createTempFile("led", null);
+    }
+
+    @After
+    public void tearDown() {
+        if (file != null) file.delete();
+    }
+
+    @Test
+    public void tokenizerParsesFrames() throws IOException {
+        CsvFrameTokenizer tokenizer = new CsvFrameTokenizer(
+                new ByteArrayInputStream(CSV.getBytes(StandardCharsets.US_ASCII)));
+        int[] frame = new int[8];
+        assertEquals(4, tokenizer.readFrame(frame));
+        assertArrayEquals(new int[] {0, 4095, 12, 0}, Arrays.copyOf(frame, 4));
+        assertEquals(5, tokenizer.readFrame(frame));
+        assertArrayEquals(new int[] {1, 2, 3, 4, 5}, Arrays.copyOf(frame, 5));
+        assertEquals(5, tokenizer.readFrame(frame));
+        assertArrayEquals(new int[] {65535, 0, 0, 0, 7}, Arrays.copyOf(frame, 5));
+        assertEquals(0, tokenizer.readFrame(frame));
+        assertEquals(4, tokenizer.getLine());
+    }
+
+    @Test
+    public void tokenizerDoesNotAllocate() throws IOException {
+        ByteArrayInputStream in = new ByteArrayInputStream(CSV.getBytes(StandardCharsets.US_ASCII));
+        CsvFrameTokenizer tokenizer = new CsvFrameTokenizer(in);
+        int[] frame = new int[8];
+
+        int sum = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sum += parse(in, tokenizer, frame);
+        }
+        long before = getAllocatedBytes();
+        for (int i = 0; i < ROUNDS; i++) {
+            sum += parse(in, tokenizer, frame);
+        }
+        long allocated = getAllocatedBytes() - before;
+
+        assertEquals((WARMUP_ROUNDS + ROUNDS) * 14L, sum);
+        assertEquals("bytes allocated while parsing", 0, allocated);
+    }
+
+    @Test
+    public void ledNodeFormatsValues() throws IOException {
+        LedNode node = new LedNode(file.getPath(), true);
+        assertTrue(node.write(new int[] {0, 4095, -1, Integer.MIN_VALUE}));
+        assertEquals("0 4095 -1 -2147483648", read());
+        assertTrue(node.write(2, 35));
+        assertEquals("2 35", read());
+        assertTrue(node.write(7));
+        assertEquals("7", read());
+        node.close();
+    }
+
+    @Test
+    public void ledNodeDoesNotAllocate() throws IOException {
+        // Like a sysfs node, opened for writing only and never truncated
+        LedNode node = new LedNode(file.getPath());
+        int[] frame = new int[33];
+        for (int i = 0; i < frame.length; i++) {
+            frame[i] = i * 123;
+        }
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            write(node, frame, i);
+        }
+        long before = getAllocatedBytes();
+        for (int i = 0; i < ROUNDS; i++) {
+            write(node, frame, i);
+        }
+        long allocated = getAllocatedBytes() - before;
+        node.close();
+
+        assertEquals("bytes allocated while writing", 0, allocated);
+    }
+
+    // Reads the whole input, returning the number of values
+    private static int parse(ByteArrayInputStream in, CsvFrameTokenizer tokenizer, int[] frame)
+            throws IOException {
+        in.reset();
+        tokenizer.reset(in);
+        int values = 0;
+        int count;
+        while ((count = tokenizer.readFrame(frame)) > 0) {
+            values += count;
+        }
+        return values;
+    }
+
+    private static void write(LedNode node, int[] frame, int round) throws IOException {
+        if (!node.write(frame) || !node.write(round % 33, round) || !node.write(round))
+            throw node.getLastError();
+    }
+
+    private long getAllocatedBytes() {
+        return threads.getCurrentThreadAllocatedBytes();
+    }
+
+    private String read() throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII);
+    }
+}
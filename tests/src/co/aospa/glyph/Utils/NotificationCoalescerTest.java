@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package co.aospa.glyph.Utils;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Checks how bursts are merged and charged to the token bucket of each app.
+ */
+public class NotificationCoalescerTest {
+
+    private static final long WINDOW = 2000;
+    private static final int REPEATS = 3;
+    private static final int CAPACITY = 2;
+    private static final long REFILL = 10000;
+
+    private static final Object RULE = new Object();
+    private static final Object OTHER_RULE = new Object();
+
+    private final NotificationCoalescer coalescer =
+            new NotificationCoalescer(WINDOW, REPEATS, CAPACITY, REFILL);
+
+    @Test
+    public void mergesIntoBurstWithoutCharging() {
+        assertEquals(NotificationCoalescer.RESULT_PLAY, coalescer.offer("chat", RULE, 0));
+        for (int i = 1; i <= 5; i++) {
+            assertEquals(NotificationCoalescer.RESULT_MERGED, coalescer.offer("chat", RULE, i * 100));
+        }
+        assertEquals(0, coalescer.takeRepeats(RULE, WINDOW - 1));
+        assertEquals(REPEATS, coalescer.takeRepeats(RULE, WINDOW));
+        assertEquals(0, coalescer.takeRepeats(RULE, WINDOW));
+
+        // Merges were free, the second token is still there
+        assertEquals(NotificationCoalescer.RESULT_PLAY, coalescer.offer("chat", RULE, WINDOW));
+        assertEquals(NotificationCoalescer.RESULT_SUPPRESSED, coalescer.offer("chat", RULE, 2 * WINDOW));
+    }
+
+    @Test
+    public void overLimitAppDoesNotJoinOtherBurst() {
+        // Use up the tokens of spam, letting every burst close
+        assertEquals(NotificationCoalescer.RESULT_PLAY, coalescer.offer("spam", RULE, 0));
+        assertEquals(NotificationCoalescer.RESULT_PLAY, coalescer.offer("spam", RULE, WINDOW));
+        assertEquals(0, coalescer.takeRepeats(RULE, 2 * WINDOW));
+
+        long start = 2 * WINDOW;
+        assertEquals(NotificationCoalescer.RESULT_PLAY, coalescer.offer("chat", RULE, start));
+        for (int i = 1; i <= 5; i++) {
+            assertEquals(NotificationCoalescer.RESULT_SUPPRESSED,
+                    coalescer.offer("spam", RULE, start + i * 100));
+        }
+        assertEquals(0, coalescer.takeRepeats(RULE, start + WINDOW));
+
+        // A refilled token lets it play again
+        assertEquals(NotificationCoalescer.RESULT_PLAY, coalescer.offer("spam", RULE, REFILL));
+    }
+
+    @Test
+    public void onlySameKeyMerges() {
+        assertEquals(NotificationCoalescer.RESULT_PLAY, coalescer.offer("chat", RULE, 0));
+        assertEquals(NotificationCoalescer.RESULT_PLAY, coalescer.offer("mail", OTHER_RULE, 100));
+        assertEquals(NotificationCoalescer.RESULT_MERGED, coalescer.offer("mail", RULE, 200));
+        assertEquals(1, coalescer.takeRepeats(RULE, WINDOW));
+        assertEquals(0, coalescer.takeRepeats(OTHER_RULE, WINDOW + 100));
+    }
+
+    @Test
+    public void unlimitedWithoutCapacity() {
+        NotificationCoalescer unlimited = new NotificationCoalescer(0, 0, 0, 0);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(NotificationCoalescer.RESULT_PLAY, unlimited.offer("chat", RULE, i));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Tools;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Build time compiler turning the CSV animation assets into the binary frame
+ * files read by co.aospa.glyph.Utils.FrameUtils. The layout written here has
+ * to match FrameUtils.
+ *
+ * Usage: glyph_frame_compiler [-p period_ms] -o out_dir file.csv...
+ *
+ * Each output is placed in out_dir at the path of its input relative to the
+ * assets directory, e.g. phone2/assets/call/Ring.csv -> out_dir/call/Ring.glyph
+ */
+public final class FrameCompiler {
+
+    private static final int MAGIC = 0x474c5946; // "GLYF"
+    private static final int VERSION = 1;
+    private static final int DEFAULT_FRAME_PERIOD = 17;
+    private static final int MAX_LED_COUNT = 256;
+    private static final int MAX_BRIGHTNESS = 0xffff;
+
+    private static final String ASSETS_DIR = "assets" + File.separator;
+    private static final String CSV_EXTENSION = ".csv";
+    private static final String FRAMES_EXTENSION = ".glyph";
+
+    public static void main(String[] args) {
+        int period = DEFAULT_FRAME_PERIOD;
+        File outDir = null;
+        List<String> inputs = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-p":
+                    period = Integer.parseInt(args[++i]);
+                    break;
+                case "-o":
+                    outDir = new File(args[++i]);
+                    break;
+                default:
+                    inputs.add(args[i]);
+            }
+        }
+
+        if (outDir == null || inputs.isEmpty()) {
+            System.err.println("usage: glyph_frame_compiler [-p period_ms] -o out_dir file.csv...");
+            System.exit(1);
+        }
+
+        try {
+            for (String input : inputs) {
+                compile(new File(input), new File(outDir, getOutputPath(input)), period);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("glyph_frame_compiler: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static String getOutputPath(String input) {
+        int assets = input.lastIndexOf(ASSETS_DIR);
+        String path = assets >= 0 ? input.substring(assets + ASSETS_DIR.length()) : new File(input).getName();
+        if (path.endsWith(CSV_EXTENSION))
+            path = path.substring(0, path.length() - CSV_EXTENSION.length());
+        return path + FRAMES_EXTENSION;
+    }
+
+    private static void compile(File input, File output, int period) throws IOException {
+        List<int[]> frames = new ArrayList<>();
+        int ledCount = -1;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(input))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.replace(" ", "").trim();
+                line = line.endsWith(",") ? line.substring(0, line.length() - 1) : line;
+                if (line.isEmpty()) continue;
+                String[] pattern = line.split(",");
+                if (ledCount == -1) {
+                    ledCount = pattern.length;
+                } else if (pattern.length != ledCount) {
+                    throw new IllegalArgumentException(input + ":" + lineNumber
+                            + ": expected " + ledCount + " values, got " + pattern.length);
+                }
+                int[] frame = new int[ledCount];
+                for (int i = 0; i < ledCount; i++) {
+                    frame[i] = Integer.parseInt(pattern[i]);
+                    if (frame[i] < 0 || frame[i] > MAX_BRIGHTNESS) {
+                        throw new IllegalArgumentException(input + ":" + lineNumber
+                                + ": brightness out of range: " + frame[i]);
+                    }
+                }
+                frames.add(frame);
+            }
+        }
+
+        if (ledCount <= 0 || ledCount > MAX_LED_COUNT)
+            throw new IllegalArgumentException(input + ": invalid LED count " + ledCount);
+
+        output.getParentFile().mkdirs();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(output)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(0);
+            out.writeShort(ledCount);
+            out.writeInt(frames.size());
+            out.writeShort(period);
+            out.writeShort(0);
+            for (int[] frame : frames) {
+                for (int value : frame) {
+                    out.writeShort(value);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,440 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Tools;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import co.aospa.glyph.Music.MusicAnalyzer;
+import co.aospa.glyph.Music.MusicLayout;
+import co.aospa.glyph.Music.MusicMailbox;
+import co.aospa.glyph.Music.MusicRenderLoop;
+import co.aospa.glyph.Music.MusicRenderer;
+import co.aospa.glyph.Utils.BrightnessTable;
+
+/**
+ * Host harness replaying audio through the music visualizer of
+ * MusicVisualizerService, so that its output can be diffed between changes
+ * and its hot path measured without a device. It drives the same analyzer,
+ * render loop and brightness scaling as the service.
+ *
+ * Usage: glyph_music_replay [options] (-w file.wav | -f captures.fft -s rate_hz)
+ *
+ *   -w file.wav   16 or 8 bit PCM, mixed down to mono and run through an FFT
+ *                 shaped like the one of android.media.audiofx.Visualizer
+ *   -f file.fft   FFT captures as passed to onFftDataCapture, back to back
+ *   -s rate_hz    sampling rate of the FFT captures
+ *   -d device     phone1 or phone2 layout, default phone2
+ *   -m mode       spectrum or zones, default spectrum on phone2, zones on phone1
+ *   -n size       capture size in bytes, default 1024
+ *   -r rate_hz    captures per second, default 10 like the service
+ *   -M max        glyph_settings_brightness_max of the device, default 4095
+ *   -l level      brightness level, default the max
+ *   -g gamma      glyph_settings_brightness_gamma of the device, default 1.0
+ *   -e led        frame index of the essential LED to keep lit, default none
+ *   -o file       frame output, default stdout
+ *   -b count      also time count passes of the analysis over all captures
+ *
+ * Every frame the service would write to the LEDs is printed as
+ * "time_ms,value,...", followed by timing statistics on stderr. Time is
+ * simulated, so the frame stream only depends on the input and the options.
+ */
+public final class MusicReplay {
+
+    private static final int DEFAULT_CAPTURE_SIZE = 1024;
+    private static final int DEFAULT_CAPTURE_RATE = 10;
+
+    public static void main(String[] args) {
+        String wav = null;
+        String dump = null;
+        int samplingRate = 0;
+        MusicLayout layout = MusicLayout.PHONE2;
+        String mode = null;
+        int captureSize = DEFAULT_CAPTURE_SIZE;
+        int captureRate = DEFAULT_CAPTURE_RATE;
+        int maxBrightness = BrightnessTable.MAX_ASSET_VALUE;
+        int brightness = -1;
+        float gamma = 1f;
+        int essentialLed = -1;
+        String output = null;
+        int passes = 0;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-w":
+                        wav = args[++i];
+                        break;
+                    case "-f":
+                        dump = args[++i];
+                        break;
+                    case "-s":
+                        samplingRate = Integer.parseInt(args[++i]);
+                        break;
+                    case "-d":
+                        String device = args[++i];
+                        if (!device.equals("phone1") && !device.equals("phone2"))
+                            throw new IllegalArgumentException("unknown device " + device);
+                        layout = device.equals("phone1") ? MusicLayout.PHONE1 : MusicLayout.PHONE2;
+                        break;
+                    case "-m":
+                        mode = args[++i];
+                        if (!mode.equals("spectrum") && !mode.equals("zones"))
+                            throw new IllegalArgumentException("unknown mode " + mode);
+                        break;
+                    case "-n":
+                        captureSize = Integer.parseInt(args[++i]);
+                        break;
+                    case "-r":
+                        captureRate = Integer.parseInt(args[++i]);
+                        break;
+                    case "-M":
+                        maxBrightness = Integer.parseInt(args[++i]);
+                        break;
+                    case "-l":
+                        brightness = Integer.parseInt(args[++i]);
+                        break;
+                    case "-g":
+                        gamma = Float.parseFloat(args[++i]);
+                        break;
+                    case "-e":
+                        essentialLed = Integer.parseInt(args[++i]);
+                        break;
+                    case "-o":
+                        output = args[++i];
+                        break;
+                    case "-b":
+                        passes = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+            }
+            if ((wav == null) == (dump == null) || (dump != null && samplingRate <= 0))
+                throw new IllegalArgumentException("need either -w or -f with -s");
+            if (captureSize < 128 || Integer.bitCount(captureSize) != 1)
+                throw new IllegalArgumentException("capture size must be a power of two from 128");
+            if (captureRate <= 0)
+                throw new IllegalArgumentException("capture rate must be positive");
+            if (brightness == -1) brightness = maxBrightness;
+            if (maxBrightness <= 0 || brightness < 0 || brightness > maxBrightness)
+                throw new IllegalArgumentException("brightness must be from 0 to the max");
+            if (essentialLed >= layout.getPatternLength())
+                throw new IllegalArgumentException("essential LED out of range");
+        } catch (RuntimeException e) {
+            System.err.println("glyph_music_replay: " + e.getMessage());
+            System.err.println("usage: glyph_music_replay [-d phone1|phone2] [-m spectrum|zones] [-n size]"
+                    + " [-r rate_hz] [-M max] [-l level] [-g gamma] [-e led] [-o file] [-b count]"
+                    + " (-w file.wav | -f captures.fft -s rate_hz)");
+            System.exit(1);
+        }
+
+        boolean spectrum = mode != null ? mode.equals("spectrum") : layout == MusicLayout.PHONE2;
+        BrightnessTable table = new BrightnessTable(maxBrightness, brightness, gamma);
+        try {
+            List<byte[]> captures;
+            if (wav != null) {
+                Wave wave = readWave(Files.readAllBytes(new File(wav).toPath()), wav);
+                samplingRate = wave.rate;
+                captures = captureWave(wave, captureSize, captureRate);
+            } else {
+                captures = readCaptures(new FileInputStream(dump), dump, captureSize);
+            }
+            try (PrintStream out = output != null
+                    ? new PrintStream(new FileOutputStream(output)) : System.out) {
+                replay(captures, samplingRate * 1000, captureRate, layout, spectrum,
+                        table, essentialLed, out, System.err);
+            }
+            if (passes > 0) benchmark(captures, samplingRate * 1000, layout, spectrum, passes);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("glyph_music_replay: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the captures through the analysis and render loop of the service
+     * on a simulated clock and prints every frame it would write, scaled
+     * like AnimationManager does. samplingRate is in mHz like the one passed
+     * to onFftDataCapture. Timing statistics go to stats unless it is null.
+     */
+    static void replay(List<byte[]> captures, int samplingRate, int captureRate,
+            MusicLayout layout, boolean spectrum, BrightnessTable table, int essentialLed,
+            PrintStream out, PrintStream stats) {
+        MusicAnalyzer analyzer = new MusicAnalyzer(layout, spectrum);
+        MusicRenderer renderer = new MusicRenderer(layout, spectrum, BrightnessTable.MAX_ASSET_VALUE);
+        MusicMailbox mailbox = new MusicMailbox(analyzer.getBandCount());
+        FramePrinter printer = new FramePrinter(table, essentialLed, layout.getPatternLength());
+        MusicRenderLoop loop = new MusicRenderLoop(mailbox, renderer, printer);
+        long[] analyzeTimes = new long[captures.size()];
+        List<Long> renderTimes = new ArrayList<>();
+
+        // -1 while the loop is stopped
+        long nextFrame = -1;
+        int capture = 0;
+        while (capture < captures.size() || nextFrame >= 0) {
+            long captureTime = capture < captures.size() ? capture * 1000L / captureRate : Long.MAX_VALUE;
+            if (nextFrame < 0 || captureTime <= nextFrame) {
+                // Capture callback
+                MusicMailbox.Frame frame = mailbox.getBack();
+                long start = System.nanoTime();
+                frame.beats = analyzer.analyze(captures.get(capture), samplingRate, frame.energies);
+                analyzeTimes[capture] = System.nanoTime() - start;
+                mailbox.publish();
+                if (loop.requestStart()) nextFrame = loop.start(captureTime);
+                capture++;
+                continue;
+            }
+
+            // Render loop tick, printed after it is timed
+            long start = System.nanoTime();
+            long now = nextFrame;
+            nextFrame = loop.tick(now);
+            renderTimes.add(System.nanoTime() - start);
+            printer.flush(out);
+        }
+
+        if (stats == null) return;
+        long[] render = new long[renderTimes.size()];
+        for (int i = 0; i < render.length; i++) {
+            render[i] = renderTimes.get(i);
+        }
+        stats.println("captures: " + captures.size() + " | ticks: " + render.length
+                + " | frames written: " + printer.frames);
+        stats.println("analyze ns: " + stats(analyzeTimes));
+        stats.println("render ns: " + stats(render));
+    }
+
+    // Scales frames like AnimationManager.updateMusicFrame and prints them on flush
+    private static final class FramePrinter implements MusicRenderLoop.FrameListener {
+
+        private final BrightnessTable table;
+        private final int essentialLed;
+        private final int[] scaled;
+        private final StringBuilder line = new StringBuilder();
+        private long time = -1;
+        int frames;
+
+        FramePrinter(BrightnessTable table, int essentialLed, int length) {
+            this.table = table;
+            this.essentialLed = essentialLed;
+            scaled = new int[length];
+        }
+
+        @Override
+        public void onFrame(long now, int[] frame) {
+            table.scaleFrame(frame, scaled, essentialLed);
+            time = now;
+        }
+
+        void flush(PrintStream out) {
+            if (time < 0) return;
+            line.setLength(0);
+            line.append(time);
+            for (int value : scaled) {
+                line.append(',').append(value);
+            }
+            out.println(line);
+            frames++;
+            time = -1;
+        }
+    }
+
+    // Times the analysis alone after a warm up pass, the beats keep it from being optimized out
+    private static void benchmark(List<byte[]> captures, int samplingRate, MusicLayout layout,
+            boolean spectrum, int passes) {
+        MusicAnalyzer analyzer = new MusicAnalyzer(layout, spectrum);
+        double[] energies = new double[analyzer.getBandCount()];
+        int beats = 0;
+        for (byte[] fft : captures) {
+            beats |= analyzer.analyze(fft, samplingRate, energies);
+        }
+        long start = System.nanoTime();
+        for (int pass = 0; pass < passes; pass++) {
+            for (byte[] fft : captures) {
+                beats |= analyzer.analyze(fft, samplingRate, energies);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        System.err.println("benchmark: " + passes + " passes | "
+                + String.format("%.1f", (double) elapsed / ((long) passes * captures.size()))
+                + " ns per capture | beats: " + Integer.toBinaryString(beats));
+    }
+
+    private static String stats(long[] times) {
+        if (times.length == 0) return "none";
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        long sum = 0;
+        for (long time : sorted) {
+            sum += time;
+        }
+        return "min " + sorted[0]
+                + " | mean " + sum / sorted.length
+                + " | p50 " + sorted[sorted.length / 2]
+                + " | p99 " + sorted[(int) Math.min(sorted.length - 1, sorted.length * 99L / 100)]
+                + " | max " + sorted[sorted.length - 1];
+    }
+
+    static final class Wave {
+        int rate;
+        // Mono, unsigned 8 bit like the Visualizer waveform
+        byte[] samples;
+    }
+
+    static Wave readWave(byte[] bytes, String file) {
+        ByteBuffer data = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (data.remaining() < 12 || data.getInt(0) != 0x46464952 || data.getInt(8) != 0x45564157)
+            throw new IllegalArgumentException(file + ": not a RIFF/WAVE file");
+
+        int channels = 0;
+        int bits = 0;
+        Wave wave = new Wave();
+        data.position(12);
+        while (data.remaining() >= 8) {
+            int id = data.getInt();
+            int size = data.getInt();
+            if (size < 0 || size > data.remaining()) size = data.remaining();
+            if (id == 0x20746d66) { // "fmt "
+                int format = data.getShort(data.position()) & 0xffff;
+                channels = data.getShort(data.position() + 2) & 0xffff;
+                wave.rate = data.getInt(data.position() + 4);
+                bits = data.getShort(data.position() + 14) & 0xffff;
+                if (format != 1 || (bits != 8 && bits != 16) || channels == 0)
+                    throw new IllegalArgumentException(file + ": only 8 or 16 bit PCM is supported");
+            } else if (id == 0x61746164) { // "data"
+                if (channels == 0)
+                    throw new IllegalArgumentException(file + ": data before format");
+                int frameBytes = channels * bits / 8;
+                int count = size / frameBytes;
+                wave.samples = new byte[count];
+                for (int i = 0, offset = data.position(); i < count; i++, offset += frameBytes) {
+                    int sum = 0;
+                    for (int c = 0; c < channels; c++) {
+                        sum += bits == 16
+                                ? data.getShort(offset + c * 2)
+                                : ((data.get(offset + c) & 0xff) - 128) << 8;
+                    }
+                    wave.samples[i] = (byte) ((sum / channels >> 8) + 128);
+                }
+                return wave;
+            }
+            data.position(data.position() + size + (size & 1));
+        }
+        throw new IllegalArgumentException(file + ": no data chunk");
+    }
+
+    // The captureSize samples before every capture, as the Visualizer takes them
+    static List<byte[]> captureWave(Wave wave, int captureSize, int captureRate) {
+        List<byte[]> captures = new ArrayList<>();
+        double[] re = new double[captureSize];
+        double[] im = new double[captureSize];
+        for (int i = 1; ; i++) {
+            long end = (long) i * wave.rate / captureRate;
+            if (end > wave.samples.length) break;
+            if (end < captureSize) continue;
+            for (int j = 0; j < captureSize; j++) {
+                re[j] = ((wave.samples[(int) end - captureSize + j] & 0xff) - 128) << 8;
+                im[j] = 0;
+            }
+            fft(re, im);
+            byte[] capture = new byte[captureSize];
+            capture[0] = toFftByte(re[0], captureSize);
+            capture[1] = toFftByte(re[captureSize / 2], captureSize);
+            for (int k = 1; k < captureSize / 2; k++) {
+                capture[2 * k] = toFftByte(re[k], captureSize);
+                capture[2 * k + 1] = toFftByte(im[k], captureSize);
+            }
+            captures.add(capture);
+        }
+        return captures;
+    }
+
+    // Scaled by 1 / n, shifted down by 5 bits and halved until it fits a byte like Visualizer::doFft
+    private static byte toFftByte(double value, int n) {
+        int scaled = (int) (value / n) >> 5;
+        while (scaled > 127 || scaled < -128) scaled >>= 1;
+        return (byte) scaled;
+    }
+
+    // In place radix 2 FFT, the length must be a power of two
+    private static void fft(double[] re, double[] im) {
+        int n = re.length;
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1) j ^= bit;
+            j ^= bit;
+            if (i < j) {
+                double t = re[i]; re[i] = re[j]; re[j] = t;
+                t = im[i]; im[i] = im[j]; im[j] = t;
+            }
+        }
+        for (int length = 2; length <= n; length <<= 1) {
+            double angle = -2 * Math.PI / length;
+            double stepRe = Math.cos(angle);
+            double stepIm = Math.sin(angle);
+            for (int start = 0; start < n; start += length) {
+                double wRe = 1;
+                double wIm = 0;
+                for (int k = 0; k < length / 2; k++) {
+                    int a = start + k;
+                    int b = a + length / 2;
+                    double tRe = re[b] * wRe - im[b] * wIm;
+                    double tIm = re[b] * wIm + im[b] * wRe;
+                    re[b] = re[a] - tRe;
+                    im[b] = im[a] - tIm;
+                    re[a] += tRe;
+                    im[a] += tIm;
+                    double next = wRe * stepRe - wIm * stepIm;
+                    wIm = wRe * stepIm + wIm * stepRe;
+                    wRe = next;
+                }
+            }
+        }
+    }
+
+    static List<byte[]> readCaptures(InputStream stream, String file, int captureSize) throws IOException {
+        List<byte[]> captures = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+            while (true) {
+                byte[] capture = new byte[captureSize];
+                try {
+                    in.readFully(capture);
+                } catch (EOFException e) {
+                    break;
+                }
+                captures.add(capture);
+            }
+        }
+        if (captures.isEmpty())
+            throw new IllegalArgumentException(file + ": no complete capture of " + captureSize + " bytes");
+        return captures;
+    }
+}